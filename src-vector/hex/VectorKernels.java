@@ -0,0 +1,115 @@
+package hex;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels with explicit vector operations of the Vector API, in the widest
+ * shape the CPU has. Built only on a JDK with the jdk.incubator.vector
+ * module and loaded by <tt>Kernels.get</tt> when the module is added.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> DOUBLES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Long> LONGS =
+            VectorSpecies.of(long.class, DOUBLES.vectorShape());
+
+    /**
+     * Shift of each lane of LONGS, 0, 1, 2 and so on.
+     */
+    private static final LongVector SHIFTS =
+            LongVector.zero(LONGS).addIndex(1);
+
+    private static final VectorSpecies<Integer> INTS =
+            IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Bytes with as many lanes as INTS, null if INTS is too narrow for a
+     * byte shape (less than 8 lanes).
+     */
+    private static final VectorSpecies<Byte> BYTES = INTS.length() >= 8
+            ? VectorSpecies.of(byte.class,
+                    VectorShape.forBitSize(INTS.length() * Byte.SIZE))
+            : null;
+
+    @Override
+    String getName() {
+        return "vector " + DOUBLES.vectorBitSize() + " bit";
+    }
+
+    @Override
+    void toInput(long[] vertical, long[] horizontal, int fields, byte player,
+            double[] out) {
+        DoubleVector own = DoubleVector.broadcast(DOUBLES,
+                player == 0 ? 1.0 : -1.0);
+        DoubleVector opponent = own.neg();
+        DoubleVector empty = DoubleVector.zero(DOUBLES);
+        int lanes = DOUBLES.length();
+
+        //lanes divide 64, so a vector never takes bits from two words
+        int i = 0;
+        for (; i < DOUBLES.loopBound(fields); i += lanes) {
+            VectorMask<Double> first = bits(vertical[i >>> 6] >>> (i & 63));
+            VectorMask<Double> second = bits(horizontal[i >>> 6] >>> (i & 63));
+            empty.blend(own, first).blend(opponent, second).intoArray(out, i);
+        }
+        for (; i < fields; i++) {
+            long bit = 1L << i;
+            if ((vertical[i >>> 6] & bit) != 0) {
+                out[i] = own.lane(0);
+            } else if ((horizontal[i >>> 6] & bit) != 0) {
+                out[i] = opponent.lane(0);
+            } else {
+                out[i] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Returns the mask of the low bits of a word, lane k is set if bit k is.
+     */
+    private static VectorMask<Double> bits(long word) {
+        return LongVector.broadcast(LONGS, word).lanewise(VectorOperators.LSHR,
+                SHIFTS).and(1L).compare(VectorOperators.NE, 0L).cast(DOUBLES);
+    }
+
+    @Override
+    void credit(byte[] fill, byte mark, boolean won, int[] counts,
+            int[] wins, int offset) {
+        if (BYTES == null) {
+            super.credit(fill, mark, won, counts, wins, offset);
+            return;
+        }
+
+        int i = 0;
+        for (; i < BYTES.loopBound(fill.length); i += BYTES.length()) {
+            VectorMask<Integer> got = ByteVector.fromArray(BYTES, fill, i)
+                    .convertShape(VectorOperators.B2I, INTS, 0)
+                    .reinterpretAsInts().eq(mark);
+            IntVector.fromArray(INTS, counts, offset + i)
+                    .add(1, got).intoArray(counts, offset + i);
+            if (won) {
+                IntVector.fromArray(INTS, wins, offset + i)
+                        .add(1, got).intoArray(wins, offset + i);
+            }
+        }
+        for (; i < fill.length; i++) {
+            if (fill[i] == mark) {
+                counts[offset + i]++;
+                if (won) {
+                    wins[offset + i]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package hex;
+
+/**
+ * How <tt>PlayerMonteCarlo</tt> spreads per candidate playouts over the
+ * candidate moves.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public enum AllocationStrategy {
+
+    /**
+     * Every candidate gets the same number of playouts.
+     */
+    UNIFORM,
+
+    /**
+     * Candidates are played in rounds. After each round, candidates whose
+     * upper confidence bound is below the best lower confidence bound are
+     * dropped, and the search stops as soon as only one is left.
+     */
+    RACING,
+
+    /**
+     * The budget is split into log2(candidates) rounds of equal size, and
+     * after each round only the better half of the candidates is kept.
+     */
+    SUCCESSIVE_HALVING
+}
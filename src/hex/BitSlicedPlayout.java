@@ -0,0 +1,238 @@
+package hex;
+
+import java.util.Arrays;
+
+/**
+ * Playout that plays 64 random fills at once, one in each bit of a long.
+ * Every field of the board has a lane mask whose bit k is set if the first
+ * player has the field in game k, so filling a field or spreading the flood
+ * fill over it is one word operation for all 64 games.
+ * <p>
+ * Fills have exactly the same number of marks of each player as the fills of
+ * <tt>FillPlayout</tt>. Each field first gets a fair coin in each game, one
+ * random long per field, and the coins are counted per game with bit-sliced
+ * counters. Then each game that got too many (or too few) first player's
+ * marks loses (or gains) them at fields picked at random. A fair coin fill
+ * with a given number of marks is a uniformly random fill with that many
+ * marks, and so is what is left after marks are taken off at random, so
+ * every game gets a uniformly random fill, just like shuffling the sequence
+ * does. Only a few marks per game have to be corrected.
+ * <p>
+ * The winner of all games is found by sweeping the board down and up,
+ * growing the set of first player's fields connected to the top, until
+ * nothing changes. The lane masks are kept on a grid with a border of one
+ * field, the top border connected in all games, so a field's six neighbors
+ * are at fixed offsets and the sweeps need no bounds checks.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class BitSlicedPlayout extends Playout {
+
+    /**
+     * Number of games played at once.
+     */
+    static final int LANES = 64;
+
+    /**
+     * Width of the grid, the size of the board and the border.
+     */
+    private final int width;
+
+    /**
+     * Grid indices of the first and after the last field of the board.
+     */
+    private final int firstCell;
+    private final int lastCell;
+
+    /**
+     * Grid indices of the empty fields, in the order of emptyFields.
+     */
+    private int[] cells;
+
+    /**
+     * Lane masks of the current fills, bit k is set if the first player has
+     * the field in game k. The border is empty.
+     */
+    private final long[] first;
+
+    /**
+     * Lane masks of fields connected to the top by first player's fields.
+     * The top border is connected in all games.
+     */
+    private final long[] reach;
+
+    /**
+     * Number of first player's marks among the fields other than the
+     * candidate.
+     */
+    private int ones;
+
+    /**
+     * Bit-sliced counters of first player's marks in each game, plane p
+     * holds bit p of all counters.
+     */
+    private long[] count;
+
+    /**
+     * @param base Position from which the playouts are played
+     * @param emptyFields Indices of empty fields of base
+     */
+    BitSlicedPlayout(Board base, int[] emptyFields) {
+        super(base, emptyFields);
+        int size = base.getSize();
+        this.width = size + 2;
+        this.firstCell = width + 1;
+        this.lastCell = size * width + size + 1;
+        this.first = new long[width * width];
+        this.reach = new long[width * width];
+        setUp();
+    }
+
+    @Override
+    void retarget(Board base, int[] emptyFields) {
+        super.retarget(base, emptyFields);
+        setUp();
+    }
+
+    /**
+     * Sets the lane masks, cells and counters up for the base position.
+     */
+    private void setUp() {
+        int size = width - 2;
+        Arrays.fill(first, 0);
+        for (int i = 0; i < size * size; i++) {
+            if (base.getMark(i) == 1) {
+                first[cell(i)] = -1L;
+            }
+        }
+        this.cells = new int[emptyFields.length];
+        for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+            cells[iCount] = cell(emptyFields[iCount]);
+        }
+
+        //same number of marks as the sequence of FillPlayout
+        int n = emptyFields.length;
+        int marks = 0;
+        if (n > 0) {
+            for (byte b : PlayerMonteCarlo.getSequence(movesPlayed, size * size)) {
+                if (b == 1) { marks++; }
+            }
+        }
+        this.ones = marks;
+        int planes = 32 - Integer.numberOfLeadingZeros(Math.max(1, n));
+        this.count = new long[planes];
+    }
+
+    /**
+     * Returns the grid index of a field.
+     */
+    private int cell(int i) {
+        int size = width - 2;
+        return (i / size + 1) * width + i % size + 1;
+    }
+
+    @Override
+    int run(int candidate, int repetitions) {
+        int wins = 0;
+        long mine = player == 0 ? -1L : 0;
+
+        for (int done = 0; done < repetitions; done += LANES) {
+            int lanes = Math.min(LANES, repetitions - done);
+            long active = lanes == LANES ? -1L : (1L << lanes) - 1;
+
+            fill(candidate, mine, active);
+            long firstWon = firstPlayerWins();
+            wins += Long.bitCount(~(firstWon ^ mine) & active);
+            fieldsPlayed += (long) lanes * emptyFields.length;
+        }
+
+        return wins;
+    }
+
+    /**
+     * Fills the empty fields of all games. The candidate gets the mark of
+     * the player on the move, the rest get ones first player's marks in each
+     * game.
+     *
+     * @param candidate Index in emptyFields of the candidate
+     * @param mine Lane mask of the candidate
+     * @param active Lane mask of the games that are played
+     */
+    private void fill(int candidate, long mine, long active) {
+        int planes = count.length;
+        Arrays.fill(count, 0);
+
+        //a fair coin for each field in each game, counted per game
+        for (int iCount = 0; iCount < cells.length; iCount++) {
+            if (iCount == candidate) {
+                first[cells[iCount]] = mine;
+                continue;
+            }
+            long coins = random.nextLong();
+            first[cells[iCount]] = coins;
+            for (int p = 0; p < planes && coins != 0; p++) {
+                long c = count[p];
+                count[p] = c ^ coins;
+                coins &= c;
+            }
+        }
+
+        //give or take marks at random fields until each game has ones
+        int others = cells.length - 1;
+        for (long lanes = active; lanes != 0; lanes &= lanes - 1) {
+            int k = Long.numberOfTrailingZeros(lanes);
+            long bit = 1L << k;
+            int marks = 0;
+            for (int p = 0; p < planes; p++) {
+                marks |= (int) (count[p] >>> k & 1) << p;
+            }
+            while (marks != ones) {
+                int iCount = random.nextInt(others);
+                int c = cells[iCount < candidate ? iCount : iCount + 1];
+                boolean marked = (first[c] & bit) != 0;
+                if (marks > ones && marked) {
+                    first[c] &= ~bit;
+                    marks--;
+                } else if (marks < ones && !marked) {
+                    first[c] |= bit;
+                    marks++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds in which games the first player connected the top and bottom
+     * edges.
+     *
+     * @return Lane mask of the games the first player won
+     */
+    private long firstPlayerWins() {
+        long[] f = first;
+        long[] r = reach;
+        int w = width;
+        Arrays.fill(r, 0, w, -1L);
+        Arrays.fill(r, w, r.length, 0);
+
+        //neighbors are up, up right, left, right, down left and down
+        boolean down = true;
+        long changed = -1L;
+        while (changed != 0) {
+            changed = 0;
+            for (int k = firstCell; k < lastCell; k++) {
+                int i = down ? k : firstCell + lastCell - 1 - k;
+                long grown = r[i] | (f[i] & (r[i - w] | r[i - w + 1] | r[i - 1]
+                        | r[i + 1] | r[i + w - 1] | r[i + w]));
+                changed |= grown ^ r[i];
+                r[i] = grown;
+            }
+            down = !down;
+        }
+
+        long won = 0;
+        for (int i = lastCell - w + 2; i < lastCell; i++) {
+            won |= r[i];
+        }
+        return won;
+    }
+}
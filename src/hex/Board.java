@@ -2,6 +2,8 @@ package hex;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -14,35 +16,111 @@ import java.util.logging.Logger;
 public class Board {
 
     /**
-     * Matrix of bytes representing past players' past moves.
+     * Bitset of the first (vertical) player's marks. Field (row, col) is
+     * stored in bit row * size + col.
      */
-    byte[][] matrix;
+    long[] vertical;
+
+    /**
+     * Bitset of the second (horizontal) player's marks, same layout as
+     * vertical.
+     */
+    long[] horizontal;
 
     /**
      * Number of empty fields left on the board.
      */
     int noOfEmptyFields;
 
+    /**
+     * Indices of empty fields, in no particular order. Only the first
+     * noOfEmptyFields entries are valid. Marking a field swaps it with the
+     * last valid entry, so removing the mark again restores the list.
+     */
+    int[] emptyList;
+
+    /**
+     * Position of each empty field in emptyList. Entries of marked fields are
+     * meaningless.
+     */
+    int[] emptyPosition;
+
     /**
      * Board side size.
      */
     int size;
+
+    /**
+     * Shared geometry of boards of this size.
+     */
+    HexGeometry geometry;
     
     /**
      * Player who has the next move. First player = 0, second = 1.
      */
     private byte nextMovePlayer;
 
+    /**
+     * Zobrist hash of the position, including the player on the move.
+     * Maintained by putMark and removeMark.
+     */
+    private long hash;
+
+    /**
+     * Zobrist hash of the position rotated by 180 degrees, maintained along
+     * with hash so that the rotation costs nothing to look up.
+     */
+    private long rotatedHash;
+
+    /**
+     * Fields marked by makeMove, in order. Entries from historySize up to
+     * redoSize are moves that were undone and can be redone.
+     */
+    private int[] history;
+    private int historySize;
+    private int redoSize;
+
+    /**
+     * Scratch space for flood fills on boards larger than 8x8, allocated on
+     * first use. Makes connectivity checks on the same board thread unsafe.
+     */
+    private long[] floodScratch;
+
     /**
      * Initializes an empty Board.
      *
      * @param size board size
      */
     public Board(int size) {
-        this.matrix = new byte[size][size];
+        this.geometry = HexGeometry.forSize(size);
+        this.vertical = new long[geometry.words];
+        this.horizontal = new long[geometry.words];
         this.size = size;
-        this.noOfEmptyFields = size * size;
         this.nextMovePlayer = 0;
+        this.hash = 0;
+        this.rotatedHash = 0;
+        this.history = new int[size * size];
+        initEmptyList();
+    }
+
+    /**
+     * Initializes a Board with given marks and no move history.
+     *
+     * @param size board size
+     * @param vertical Bitset of the first player's marks, copied
+     * @param horizontal Bitset of the second player's marks, copied
+     * @param nextMovePlayer Player who has the next move
+     */
+    Board(int size, long[] vertical, long[] horizontal, byte nextMovePlayer) {
+        this.geometry = HexGeometry.forSize(size);
+        this.vertical = vertical.clone();
+        this.horizontal = horizontal.clone();
+        this.size = size;
+        this.nextMovePlayer = nextMovePlayer;
+        this.history = new int[size * size];
+        initEmptyList();
+        this.hash = computeHash(BoardSymmetry.IDENTITY);
+        this.rotatedHash = computeHash(BoardSymmetry.ROTATE_180);
     }
 
     /**
@@ -55,18 +133,44 @@ public class Board {
             this.nextMovePlayer = 0;
             Scanner scan = new Scanner(new File(filename));
             this.size = scan.nextInt();
-            this.matrix = new byte[size][size];
-            this.noOfEmptyFields = 0;
+            this.geometry = HexGeometry.forSize(size);
+            this.vertical = new long[geometry.words];
+            this.horizontal = new long[geometry.words];
             for (int i = 0; i < size; i++) {
                 for (int j = 0; j < size; j++) {
-                    matrix[i][j] = scan.nextByte();
+                    byte mark = scan.nextByte();
+                    if (mark != 0) {
+                        setMark(i * size + j, mark);
+                    }
                 }
             }
+            initEmptyList();
+            this.hash = computeHash(BoardSymmetry.IDENTITY);
+            this.rotatedHash = computeHash(BoardSymmetry.ROTATE_180);
+            this.history = new int[size * size];
         } catch (FileNotFoundException ex) {
             Logger.getLogger(PlayerMonteCarlo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
+    /**
+     * Fills emptyList and emptyPosition with the empty fields of the board,
+     * in row-major order.
+     */
+    private void initEmptyList() {
+        int fields = size * size;
+        this.emptyList = new int[fields];
+        this.emptyPosition = new int[fields];
+        this.noOfEmptyFields = 0;
+        for (int i = 0; i < fields; i++) {
+            if (getMark(i) == 0) {
+                emptyList[noOfEmptyFields] = i;
+                emptyPosition[i] = noOfEmptyFields;
+                noOfEmptyFields++;
+            }
+        }
+    }
+
     /**
      * Puts a "mark" on a field
      *
@@ -75,10 +179,33 @@ public class Board {
      * @return true if move is legal, false otherwise
      */
     public boolean putMark(Coordinate c, byte mark) {
+        return putMark(c.row * size + c.col, mark);
+    }
+
+    /**
+     * Puts a "mark" on a field
+     *
+     * @param i Index of the field, row * size + col
+     * @param mark 1 or 2
+     * @return true if move is legal, false otherwise
+     */
+    public boolean putMark(int i, byte mark) {
         //if there the field is empty
-        if (!isFieldMarked(c)) {
-            matrix[c.row][c.col] = mark;  //mark it
+        if (!isFieldMarked(i)) {
+            setMark(i, mark);  //mark it
+            hash ^= geometry.zobristKey(mark, i) ^ geometry.secondPlayerToMoveKey;
+            rotatedHash ^= geometry.zobristKey(mark, geometry.fields - 1 - i)
+                    ^ geometry.secondPlayerToMoveKey;
+
+            //swap the field with the last empty one and shrink the list
+            int position = emptyPosition[i];
+            int last = emptyList[noOfEmptyFields - 1];
+            emptyList[position] = last;
+            emptyPosition[last] = position;
+            emptyList[noOfEmptyFields - 1] = i;
+            emptyPosition[i] = noOfEmptyFields - 1;
             noOfEmptyFields--;
+
             nextMovePlayer = (byte) ((nextMovePlayer + 1) % 2);
             return true;
         }
@@ -88,45 +215,155 @@ public class Board {
     }
 
     public boolean removeMark(Coordinate c){
-        if(!isFieldMarked(c)){
+        return removeMark(c.row * size + c.col);
+    }
+
+    public boolean removeMark(int i){
+        if(!isFieldMarked(i)){
             return false;
         } else {
-            matrix[c.row][c.col] = 0;
+            hash ^= geometry.zobristKey(getMark(i), i) ^ geometry.secondPlayerToMoveKey;
+            rotatedHash ^= geometry.zobristKey(getMark(i), geometry.fields - 1 - i)
+                    ^ geometry.secondPlayerToMoveKey;
+            clearMark(i);
+
+            //append the field to the list of empty fields
+            emptyList[noOfEmptyFields] = i;
+            emptyPosition[i] = noOfEmptyFields;
             noOfEmptyFields++;
+
             nextMovePlayer = (byte) ((nextMovePlayer + 1) % 2);
             return true;
         }
     }
     
+    /**
+     * Puts the mark of the player on the move on a field and records the move
+     * in the history, so it can be undone. Moves that were undone can no
+     * longer be redone after this.
+     *
+     * @param i Index of the field, row * size + col
+     * @return true if move is legal, false otherwise
+     */
+    public boolean makeMove(int i) {
+        if (!putMark(i, (byte) (nextMovePlayer + 1))) {
+            return false;
+        }
+        history[historySize++] = i;
+        redoSize = historySize;
+        return true;
+    }
+
+    /**
+     * Takes back the last move made by makeMove. Marks put and removed with
+     * putMark and removeMark in between have to be balanced.
+     *
+     * @return Index of the field that was emptied, -1 if there was no move
+     */
+    public int undoMove() {
+        if (historySize == 0) {
+            return -1;
+        }
+        int i = history[--historySize];
+        removeMark(i);
+        return i;
+    }
+
+    /**
+     * Makes the last undone move again.
+     *
+     * @return Index of the field that was marked, -1 if there was no move
+     */
+    public int redoMove() {
+        if (historySize == redoSize) {
+            return -1;
+        }
+        int i = history[historySize++];
+        putMark(i, (byte) (nextMovePlayer + 1));
+        return i;
+    }
+
+    /**
+     * Returns how many moves made by makeMove can be undone.
+     *
+     * @return Number of moves in the history
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
     public byte whosOnTheMove() {
         return nextMovePlayer;
     }
     
     /**
      * Returns an array with coordinates of empty fields on the board.
-     * O(size^2)
+     * O(size^2 / 64 + noOfEmptyFields)
      *
      * @return coordinates of empty fields
      */
     public Coordinate[] getEmptyFields() {
         Coordinate[] result = new Coordinate[noOfEmptyFields];
+        long[] boardMask = geometry.boardMask;
 
         int count = 0;
-        //for each field on the board
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
+        //for each word of the bitsets, walk its empty bits
+        for (int w = 0; w < vertical.length; w++) {
+            long empty = ~(vertical[w] | horizontal[w]) & boardMask[w];
 
-                //if the field is empty, add it
-                if (matrix[row][col] == 0) {
-                    result[count] = new Coordinate(row, col);
-                    count++;
-                }
+            while (empty != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(empty);
+                result[count] = new Coordinate(i / size, i % size);
+                count++;
+                empty &= empty - 1;
             }
         }
 
         return result;
     }
 
+    public int getNoOfEmptyFields() {
+        return noOfEmptyFields;
+    }
+
+    /**
+     * Returns the k-th empty field. Together with getNoOfEmptyFields this
+     * allows iterating over empty fields without copying them. The order of
+     * empty fields changes when marks are put or removed.
+     *
+     * @param k 0 &le; k &lt; getNoOfEmptyFields()
+     * @return Index of the empty field, row * size + col
+     */
+    public int getEmptyField(int k) {
+        if (k >= noOfEmptyFields) {
+            throw new IndexOutOfBoundsException(
+                    "k is greater than the number of empty fields.");
+        }
+        return emptyList[k];
+    }
+
+    /**
+     * Returns indices of empty fields. O(noOfEmptyFields)
+     *
+     * @return Indices of empty fields, row * size + col
+     */
+    public int[] getEmptyFieldIndices() {
+        return Arrays.copyOf(emptyList, noOfEmptyFields);
+    }
+
+    /**
+     * Picks an empty field uniformly at random. O(1)
+     *
+     * @param random Random number generator
+     * @return Index of the empty field, row * size + col
+     */
+    public int randomEmptyField(Random random) {
+        if (noOfEmptyFields == 0) {
+            throw new IllegalStateException("There are no empty fields.");
+        }
+        return emptyList[random.nextInt(noOfEmptyFields)];
+    }
+
     /**
      * Checks if a field has already been marked.
      *
@@ -134,7 +371,17 @@ public class Board {
      * @return true if field has been marked, false otherwise
      */
     public boolean isFieldMarked(Coordinate c) {
-        return matrix[c.row][c.col] != 0;
+        return isFieldMarked(c.row * size + c.col);
+    }
+
+    /**
+     * Checks if a field has already been marked.
+     *
+     * @param i Index of the field, row * size + col
+     * @return true if field has been marked, false otherwise
+     */
+    public boolean isFieldMarked(int i) {
+        return ((vertical[i >>> 6] | horizontal[i >>> 6]) & (1L << i)) != 0;
     }
     
     /**
@@ -156,19 +403,210 @@ public class Board {
     public Board deepCopy() {
         Board result = new Board(this.size);
         
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                Coordinate c = new Coordinate(row, col);
-                result.putMark(c, this.matrix[c.row][c.col]);
-            }
-        }
+        System.arraycopy(this.vertical, 0, result.vertical, 0, vertical.length);
+        System.arraycopy(this.horizontal, 0, result.horizontal, 0, horizontal.length);
+        System.arraycopy(this.emptyList, 0, result.emptyList, 0, emptyList.length);
+        System.arraycopy(this.emptyPosition, 0, result.emptyPosition, 0, emptyPosition.length);
         
         result.noOfEmptyFields = this.noOfEmptyFields;
         result.nextMovePlayer = this.nextMovePlayer;
+        result.hash = this.hash;
+        result.rotatedHash = this.rotatedHash;
+        System.arraycopy(this.history, 0, result.history, 0, redoSize);
+        result.historySize = this.historySize;
+        result.redoSize = this.redoSize;
         
         return result;
     }
 
+    /**
+     * Takes an immutable snapshot of the position. Only the bitsets are
+     * copied, geometry is shared, so this is much cheaper than deepCopy.
+     *
+     * @return Snapshot of the position
+     */
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(geometry, vertical.clone(), horizontal.clone(),
+                nextMovePlayer, noOfEmptyFields, hash);
+    }
+
+    /**
+     * Returns the Zobrist hash of the position. Positions that are equal have
+     * equal hashes, the player on the move is taken into account. O(1)
+     *
+     * @return 64-bit hash of the position
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the Zobrist hash the position would have after a symmetry,
+     * without making the transformed board. O(1) for IDENTITY and
+     * ROTATE_180, O(size^2) for the diagonal mirrors.
+     *
+     * @param s Symmetry
+     * @return 64-bit hash of the transformed position
+     */
+    public long getHash(BoardSymmetry s) {
+        switch (s) {
+            case IDENTITY:
+                return hash;
+            case ROTATE_180:
+                return rotatedHash;
+            default:
+                return computeHash(s);
+        }
+    }
+
+    /**
+     * Makes a new board with the position after a symmetry. The new board
+     * has no move history.
+     *
+     * @param s Symmetry
+     * @return Board with the transformed position
+     */
+    public Board transform(BoardSymmetry s) {
+        long[] v = new long[vertical.length];
+        long[] h = new long[horizontal.length];
+        for (int i = 0; i < size * size; i++) {
+            byte mark = s.apply(getMark(i));
+            if (mark != 0) {
+                int j = s.apply(i, size);
+                if (mark == 1) {
+                    v[j >>> 6] |= 1L << j;
+                } else {
+                    h[j >>> 6] |= 1L << j;
+                }
+            }
+        }
+        byte next = s.swapsColors() ? (byte) (1 - nextMovePlayer) : nextMovePlayer;
+        return new Board(size, v, h, next);
+    }
+
+    /**
+     * Checks if the position doesn't change under a symmetry. Only
+     * ROTATE_180 can leave a position as it is, the diagonal mirrors change
+     * the player on the move.
+     *
+     * @param s Symmetry
+     * @return true if the transformed position is the same
+     */
+    public boolean isSymmetric(BoardSymmetry s) {
+        if (s.swapsColors()) {
+            return false;
+        }
+        for (int i = 0; i < size * size; i++) {
+            if (getMark(i) != getMark(s.apply(i, size))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the symmetry that maps the position to its canonical form, the
+     * image with the smallest hash. All positions that are images of each
+     * other have the same canonical form.
+     *
+     * @return Symmetry to the canonical form
+     */
+    public BoardSymmetry canonicalSymmetry() {
+        BoardSymmetry best = BoardSymmetry.IDENTITY;
+        long bestHash = hash;
+        for (BoardSymmetry s : BoardSymmetry.values()) {
+            long h = getHash(s);
+            if (h < bestHash) {
+                best = s;
+                bestHash = h;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds which of the position and its rotation by 180 degrees has the
+     * smaller hash. Positions reached by alternating moves are never the
+     * images of each other under the diagonal mirrors, which swap the
+     * player on the move, so the rotation is all that a position and its
+     * reachable images differ by. O(1)
+     *
+     * @return ROTATE_180 if the rotated position has the smaller hash,
+     * IDENTITY otherwise
+     */
+    public BoardSymmetry canonicalRotation() {
+        return rotatedHash < hash ? BoardSymmetry.ROTATE_180
+                : BoardSymmetry.IDENTITY;
+    }
+
+    /**
+     * Returns the hash of the canonical form of the position, a key that is
+     * the same for all images of the position. Used to find duplicates in
+     * data sets.
+     *
+     * @return 64-bit hash of the canonical form
+     */
+    public long getCanonicalHash() {
+        return getHash(canonicalSymmetry());
+    }
+
+    /**
+     * Makes a new board with the canonical form of the position.
+     *
+     * @return Board with the canonical form
+     */
+    public Board canonical() {
+        return transform(canonicalSymmetry());
+    }
+
+    /**
+     * Calculates the Zobrist hash of the position after a symmetry from
+     * scratch. O(size^2)
+     *
+     * @param s Symmetry
+     * @return 64-bit hash of the transformed position
+     */
+    private long computeHash(BoardSymmetry s) {
+        byte next = s.swapsColors() ? (byte) (1 - nextMovePlayer) : nextMovePlayer;
+        long result = next == 1 ? geometry.secondPlayerToMoveKey : 0;
+        for (int i = 0; i < size * size; i++) {
+            byte mark = getMark(i);
+            if (mark != 0) {
+                result ^= geometry.zobristKey(s.apply(mark), s.apply(i, size));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Two boards are equal if they have the same size, the same marks and the
+     * same player on the move. Hashes are compared first, marks are compared
+     * only to rule out a hash collision.
+     *
+     * @param obj Other board
+     * @return true if positions are the same, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Board)) {
+            return false;
+        }
+        Board other = (Board) obj;
+        return hash == other.hash
+                && size == other.size
+                && nextMovePlayer == other.nextMovePlayer
+                && Arrays.equals(vertical, other.vertical)
+                && Arrays.equals(horizontal, other.horizontal);
+    }
+
     /**
      * Converts the board to a single row String of -1s, 0s and 1s. Used for
      * input to neural network and statistics, not human readable.
@@ -179,8 +617,9 @@ public class Board {
     public String toSingleRowString(boolean reversePlayers) {
         StringBuilder sb = new StringBuilder();
         
-        for (byte[] row : matrix) {
-            for (byte field : row) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                byte field = getMark(row, col);
                 byte b = field;
                 if (field > 0 && reversePlayers) {
                     b = (byte)(1 + Math.abs(field - 2));
@@ -211,7 +650,7 @@ public class Board {
             }
 
             for (int col = 0; col < size; col++) {
-                sb.append(matrix[row][col]).append(" ");
+                sb.append(getMark(row, col)).append(" ");
             }
 
             sb.append(System.lineSeparator());
@@ -221,12 +660,169 @@ public class Board {
     }
 
     public boolean isFieldVertical(Coordinate c) {
-        return matrix[c.row][c.col] == 1;
+        return isFieldVertical(c.row * size + c.col);
+    }
+
+    /**
+     * Checks if the field is marked by the first (vertical) player.
+     *
+     * @param i Index of the field, row * size + col
+     * @return true if the field is vertical player's, false otherwise
+     */
+    boolean isFieldVertical(int i) {
+        return (vertical[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Checks if the first (vertical) player's marks connect top and bottom.
+     * Doesn't allocate after the first call.
+     *
+     * @return true if the first player connected his edges, false otherwise
+     */
+    public boolean isVerticalConnected() {
+        return geometry.connects(vertical, HexGeometry.TOP, HexGeometry.BOTTOM,
+                floodScratch());
+    }
+
+    /**
+     * Checks if the second (horizontal) player's marks connect left and right.
+     * Doesn't allocate after the first call.
+     *
+     * @return true if the second player connected his edges, false otherwise
+     */
+    public boolean isHorizontalConnected() {
+        return geometry.connects(horizontal, HexGeometry.LEFT, HexGeometry.RIGHT,
+                floodScratch());
+    }
+
+    /**
+     * Checks who won.
+     *
+     * @return 0 if nobody has won yet, 1 or 2 if first or second player won,
+     * respectively
+     */
+    public byte getWinner() {
+        if (isVerticalConnected()) {
+            return 1;
+        } else if (isHorizontalConnected()) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private long[] floodScratch() {
+        if (floodScratch == null && geometry.words > 1) {
+            floodScratch = new long[2 * geometry.words];
+        }
+        return floodScratch;
+    }
+
+    /**
+     * Returns the mark on a field.
+     *
+     * @param row Row of the field
+     * @param col Column of the field
+     * @return 0 if the field is empty, 1 or 2 if it's marked by the first or
+     * second player, respectively
+     */
+    byte getMark(int row, int col) {
+        return getMark(row * size + col);
+    }
+
+    /**
+     * Returns the mark on a field.
+     *
+     * @param i Index of the field, row * size + col
+     * @return 0 if the field is empty, 1 or 2 if it's marked by the first or
+     * second player, respectively
+     */
+    byte getMark(int i) {
+        long bit = 1L << i;
+        if ((vertical[i >>> 6] & bit) != 0) {
+            return 1;
+        } else if ((horizontal[i >>> 6] & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Sets a mark in the bitsets without any bookkeeping (number of empty
+     * fields, player on the move, hash).
+     *
+     * @param i Index of the field, row * size + col
+     * @param mark 1 or 2
+     */
+    void setMark(int i, byte mark) {
+        long bit = 1L << i;
+        if (mark == 1) {
+            vertical[i >>> 6] |= bit;
+            horizontal[i >>> 6] &= ~bit;
+        } else {
+            horizontal[i >>> 6] |= bit;
+            vertical[i >>> 6] &= ~bit;
+        }
+    }
+
+    /**
+     * Clears a field in the bitsets without any bookkeeping.
+     *
+     * @param i Index of the field, row * size + col
+     */
+    void clearMark(int i) {
+        long bit = ~(1L << i);
+        vertical[i >>> 6] &= bit;
+        horizontal[i >>> 6] &= bit;
+    }
+
+    /**
+     * Overwrites this board with the base board, marks the field with index
+     * skip with mark and fills the rest of base's empty fields with the
+     * sequence. Used by Monte Carlo playouts, the result is only good for
+     * checking who won, bookkeeping (number of empty fields, player on the
+     * move, hash) is left as is.
+     *
+     * @param base Board on top of which the playout is made
+     * @param emptyFields Empty fields of base
+     * @param skip Index in emptyFields of the field that gets mark
+     * @param mark Mark of the player for whom the playout is made
+     * @param sequence Random sequence of 1s and 2s, one for each of the other
+     * empty fields
+     */
+    void overlay(Board base, int[] emptyFields, int skip, byte mark,
+            byte[] sequence) {
+        long[] v = vertical;
+        long[] h = horizontal;
+        System.arraycopy(base.vertical, 0, v, 0, v.length);
+        System.arraycopy(base.horizontal, 0, h, 0, h.length);
+
+        int s = 0;
+        for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+            byte m;
+            if (iCount == skip) {
+                m = mark;
+            } else if (s < sequence.length) {
+                m = sequence[s++];
+            } else {
+                continue;
+            }
+
+            int i = emptyFields[iCount];
+            if (m == 1) {
+                v[i >>> 6] |= 1L << i;
+            } else {
+                h[i >>> 6] |= 1L << i;
+            }
+        }
     }
 
     public int getSize() {
         return size;
     }
+
+    public HexGeometry getGeometry() {
+        return geometry;
+    }
     
     public Coordinate intToCoordinate(int i) throws IndexOutOfBoundsException {
         if (size*size <= i) { 
@@ -0,0 +1,132 @@
+package hex;
+
+import java.util.Arrays;
+
+/**
+ * Class <tt>BoardSnapshot</tt> is an immutable snapshot of a position on the
+ * <tt>Board</tt>. It keeps only the packed bitsets of both players and shares
+ * geometry with all boards of the same size, so recording a position after
+ * every move costs a couple of words instead of a whole board.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class BoardSnapshot {
+
+    private final HexGeometry geometry;
+    private final long[] vertical;
+    private final long[] horizontal;
+    private final byte nextMovePlayer;
+    private final int noOfEmptyFields;
+    private final long hash;
+
+    BoardSnapshot(
+            HexGeometry geometry,
+            long[] vertical,
+            long[] horizontal,
+            byte nextMovePlayer,
+            int noOfEmptyFields,
+            long hash) {
+
+        this.geometry = geometry;
+        this.vertical = vertical;
+        this.horizontal = horizontal;
+        this.nextMovePlayer = nextMovePlayer;
+        this.noOfEmptyFields = noOfEmptyFields;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a new board with the position of this snapshot. The board has
+     * no move history.
+     *
+     * @return Board with the same position
+     */
+    public Board toBoard() {
+        return new Board(geometry.size, vertical, horizontal, nextMovePlayer);
+    }
+
+    /**
+     * Returns the mark on a field.
+     *
+     * @param i Index of the field, row * size + col
+     * @return 0 if the field is empty, 1 or 2 if it's marked by the first or
+     * second player, respectively
+     */
+    public byte getMark(int i) {
+        long bit = 1L << i;
+        if ((vertical[i >>> 6] & bit) != 0) {
+            return 1;
+        } else if ((horizontal[i >>> 6] & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    public int getSize() {
+        return geometry.size;
+    }
+
+    public byte whosOnTheMove() {
+        return nextMovePlayer;
+    }
+
+    public int getNoOfEmptyFields() {
+        return noOfEmptyFields;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Converts the position to a single row String, same as
+     * Board.toSingleRowString.
+     *
+     * @param reversePlayers Should player 1 and 2 be exchanged
+     * @return
+     */
+    public String toSingleRowString(boolean reversePlayers) {
+        return toBoard().toSingleRowString(reversePlayers);
+    }
+
+    /**
+     * Checks if the board holds the position of this snapshot, without
+     * taking a snapshot of the board.
+     *
+     * @param b Board
+     * @return true if the positions and players on the move are the same
+     */
+    public boolean matches(Board b) {
+        return hash == b.getHash()
+                && geometry.size == b.getSize()
+                && nextMovePlayer == b.whosOnTheMove()
+                && Arrays.equals(vertical, b.vertical)
+                && Arrays.equals(horizontal, b.horizontal);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BoardSnapshot)) {
+            return false;
+        }
+        BoardSnapshot other = (BoardSnapshot) obj;
+        return hash == other.hash
+                && geometry.size == other.geometry.size
+                && nextMovePlayer == other.nextMovePlayer
+                && Arrays.equals(vertical, other.vertical)
+                && Arrays.equals(horizontal, other.horizontal);
+    }
+
+    @Override
+    public String toString() {
+        return toBoard().toString();
+    }
+}
@@ -0,0 +1,97 @@
+package hex;
+
+/**
+ * Symmetries of the Hex board. Rotating the board by 180 degrees keeps every
+ * player's edges, so the rotated position is just as good for the same
+ * player. Mirroring it over a diagonal swaps the pairs of edges, so the
+ * mirrored position is the same game only if the colours, and the player on
+ * the move, are swapped too.
+ * <p>
+ * Each symmetry is its own inverse.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public enum BoardSymmetry {
+
+    /**
+     * Leaves the board as it is.
+     */
+    IDENTITY(false),
+
+    /**
+     * Rotates the board by 180 degrees, (row, col) goes to
+     * (size - 1 - row, size - 1 - col).
+     */
+    ROTATE_180(false),
+
+    /**
+     * Mirrors the board over the main diagonal, (row, col) goes to
+     * (col, row), and swaps the colours.
+     */
+    TRANSPOSE_SWAP(true),
+
+    /**
+     * Mirrors the board over the other diagonal, (row, col) goes to
+     * (size - 1 - col, size - 1 - row), and swaps the colours.
+     */
+    ANTI_TRANSPOSE_SWAP(true);
+
+    private final boolean swapsColors;
+
+    private BoardSymmetry(boolean swapsColors) {
+        this.swapsColors = swapsColors;
+    }
+
+    /**
+     * Checks if the symmetry swaps the colours of the marks and the player on
+     * the move.
+     *
+     * @return true for the diagonal mirrors
+     */
+    public boolean swapsColors() {
+        return swapsColors;
+    }
+
+    /**
+     * Maps a field to its image.
+     *
+     * @param i Index of the field, row * size + col
+     * @param size Size of the board
+     * @return Index of the image of the field
+     */
+    public int apply(int i, int size) {
+        int last = size * size - 1;
+        switch (this) {
+            case ROTATE_180:
+                return last - i;
+            case TRANSPOSE_SWAP:
+                return (i % size) * size + i / size;
+            case ANTI_TRANSPOSE_SWAP:
+                return last - ((i % size) * size + i / size);
+            default:
+                return i;
+        }
+    }
+
+    /**
+     * Maps a mark to its image.
+     *
+     * @param mark 0, 1 or 2
+     * @return The mark, or the other player's mark if colours are swapped
+     */
+    public byte apply(byte mark) {
+        return swapsColors && mark != 0 ? (byte) (3 - mark) : mark;
+    }
+
+    /**
+     * Maps a coordinate to its image.
+     *
+     * @param c Coordinate of the field
+     * @param size Size of the board
+     * @return Coordinate of the image of the field
+     */
+    public Coordinate apply(Coordinate c, int size) {
+        int i = apply(c.row * size + c.col, size);
+        return new Coordinate(i / size, i % size);
+    }
+}
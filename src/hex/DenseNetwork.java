@@ -0,0 +1,436 @@
+package hex;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.neuroph.core.Connection;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.transfer.Linear;
+import org.neuroph.core.transfer.Sigmoid;
+import org.neuroph.core.transfer.Tanh;
+import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.comp.BiasNeuron;
+import org.neuroph.util.TransferFunctionType;
+
+/**
+ * A fully connected feed forward network, kept as one flat weight matrix per
+ * layer. It computes the same function as the Neuroph network it is imported
+ * from, without an object per neuron and connection, and evaluates many
+ * inputs at once, one matrix multiplication per layer.
+ * <p>
+ * The weights of a layer are stored input by input: the weights from input
+ * i to all outputs of the layer are at <tt>weights[i * outputs]</tt> and on.
+ * Inputs of the board networks are mostly zeros, and a zero input skips its
+ * whole row.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class DenseNetwork {
+
+    /**
+     * Activation functions of a layer, the ones Neuroph's multilayer
+     * perceptrons use.
+     */
+    public enum Activation {
+        LINEAR, SIGMOID, TANH
+    }
+
+    /**
+     * Number of neurons in each layer, inputs first, outputs last, without
+     * bias neurons.
+     */
+    final int[] sizes;
+
+    /**
+     * Weights of each layer, weights[l] connects layer l to layer l + 1.
+     */
+    final double[][] weights;
+
+    /**
+     * Biases of each layer, biases[l] are added to the inputs of layer l + 1.
+     */
+    final double[][] biases;
+
+    /**
+     * Activation function and slope of each layer after the input layer.
+     */
+    final Activation[] activations;
+    final double[] slopes;
+
+    /**
+     * @param sizes Number of neurons in each layer, inputs first
+     * @param weights Weights of each layer, input by input
+     * @param biases Biases of each layer
+     * @param activations Activation of each layer after the input layer
+     * @param slopes Slope of each activation
+     */
+    DenseNetwork(int[] sizes, double[][] weights, double[][] biases,
+            Activation[] activations, double[] slopes) {
+        if (sizes.length < 2) {
+            throw new IllegalArgumentException("Network needs at least 2 layers.");
+        }
+        for (int l = 0; l + 1 < sizes.length; l++) {
+            if (weights[l].length != sizes[l] * sizes[l + 1]
+                    || biases[l].length != sizes[l + 1]) {
+                throw new IllegalArgumentException("Wrong size of layer " + (l + 1));
+            }
+        }
+        this.sizes = sizes.clone();
+        this.weights = weights;
+        this.biases = biases;
+        this.activations = activations.clone();
+        this.slopes = slopes.clone();
+    }
+
+    /**
+     * Loads a network from a <tt>NetworkFile</tt>, or one saved by Neuroph
+     * (a .nnet file) and copies its weights.
+     *
+     * @param file Network file or Neuroph network file
+     * @return Network
+     */
+    public static DenseNetwork load(String file) {
+        if (NetworkFile.isNetworkFile(file)) {
+            return NetworkFile.read(file);
+        }
+        return fromNeuroph(NeuralNetwork.load(file));
+    }
+
+    /**
+     * Copies the weights of a Neuroph feed forward network, such as a
+     * MultiLayerPerceptron. Bias neurons become biases of the next layer.
+     *
+     * @param nn Neuroph network
+     * @return Network
+     * @throws IllegalArgumentException if the network isn't fully connected
+     * layer to layer or uses an activation that isn't supported
+     */
+    public static DenseNetwork fromNeuroph(NeuralNetwork nn) {
+        int layers = nn.getLayersCount();
+        int[] sizes = new int[layers];
+        List<List<Neuron>> neurons = new ArrayList<>();
+        for (int l = 0; l < layers; l++) {
+            List<Neuron> layer = new ArrayList<>();
+            for (Neuron n : nn.getLayerAt(l).getNeurons()) {
+                if (!(n instanceof BiasNeuron)) {
+                    layer.add(n);
+                }
+            }
+            neurons.add(layer);
+            sizes[l] = layer.size();
+        }
+
+        double[][] weights = new double[layers - 1][];
+        double[][] biases = new double[layers - 1][];
+        Activation[] activations = new Activation[layers - 1];
+        double[] slopes = new double[layers - 1];
+        for (int l = 0; l + 1 < layers; l++) {
+            List<Neuron> from = neurons.get(l);
+            List<Neuron> to = neurons.get(l + 1);
+            int outputs = to.size();
+            weights[l] = new double[from.size() * outputs];
+            biases[l] = new double[outputs];
+
+            for (int j = 0; j < outputs; j++) {
+                Neuron n = to.get(j);
+                for (Connection c : n.getInputConnections()) {
+                    double w = c.getWeight().getValue();
+                    Neuron source = c.getFromNeuron();
+                    if (source instanceof BiasNeuron) {
+                        biases[l][j] += w * source.getOutput();
+                        continue;
+                    }
+                    int i = from.indexOf(source);
+                    if (i < 0) {
+                        throw new IllegalArgumentException(
+                                "Connection skips a layer at layer " + (l + 1));
+                    }
+                    weights[l][i * outputs + j] = w;
+                }
+
+                TransferFunction f = n.getTransferFunction();
+                Activation a;
+                double slope;
+                if (f instanceof Sigmoid) {
+                    a = Activation.SIGMOID;
+                    slope = ((Sigmoid) f).getSlope();
+                } else if (f instanceof Tanh) {
+                    a = Activation.TANH;
+                    slope = ((Tanh) f).getSlope();
+                } else if (f instanceof Linear) {
+                    a = Activation.LINEAR;
+                    slope = ((Linear) f).getSlope();
+                } else {
+                    throw new IllegalArgumentException("Activation "
+                            + f.getClass().getSimpleName() + " isn't supported.");
+                }
+                if (j > 0 && (a != activations[l] || slope != slopes[l])) {
+                    throw new IllegalArgumentException(
+                            "Neurons of layer " + (l + 1) + " differ in activation.");
+                }
+                activations[l] = a;
+                slopes[l] = slope;
+            }
+        }
+
+        return new DenseNetwork(sizes, weights, biases, activations, slopes);
+    }
+
+    /**
+     * Makes a Neuroph MultiLayerPerceptron with the weights of this network,
+     * the opposite of fromNeuroph.
+     *
+     * @return Neuroph network
+     * @throws IllegalArgumentException if the layers differ in activation,
+     * or it is linear
+     */
+    public NeuralNetwork toNeuroph() {
+        Activation a = activations[0];
+        for (int l = 1; l < activations.length; l++) {
+            if (activations[l] != a) {
+                throw new IllegalArgumentException("Layers differ in activation.");
+            }
+        }
+        if (a == Activation.LINEAR) {
+            throw new IllegalArgumentException("Linear networks aren't exported.");
+        }
+
+        MultiLayerPerceptron nn = new MultiLayerPerceptron(
+                a == Activation.SIGMOID ? TransferFunctionType.SIGMOID
+                        : TransferFunctionType.TANH, sizes);
+        for (int l = 0; l + 1 < sizes.length; l++) {
+            List<Neuron> from = new ArrayList<>();
+            for (Neuron n : nn.getLayerAt(l).getNeurons()) {
+                if (!(n instanceof BiasNeuron)) {
+                    from.add(n);
+                }
+            }
+            int outputs = sizes[l + 1];
+            int j = 0;
+            for (Neuron n : nn.getLayerAt(l + 1).getNeurons()) {
+                if (n instanceof BiasNeuron) {
+                    continue;
+                }
+                for (Connection c : n.getInputConnections()) {
+                    Neuron source = c.getFromNeuron();
+                    c.getWeight().setValue(source instanceof BiasNeuron
+                            ? biases[l][j]
+                            : weights[l][from.indexOf(source) * outputs + j]);
+                }
+                TransferFunction f = n.getTransferFunction();
+                if (f instanceof Sigmoid) {
+                    ((Sigmoid) f).setSlope(slopes[l]);
+                } else {
+                    ((Tanh) f).setSlope(slopes[l]);
+                }
+                j++;
+            }
+        }
+        return nn;
+    }
+
+    /**
+     * Saves the network as a Neuroph network file (.nnet), which
+     * <tt>load</tt> and <tt>PlayerNeuralNetwork</tt> read.
+     *
+     * @param file Neuroph network file
+     */
+    public void save(String file) {
+        toNeuroph().save(file);
+    }
+
+    /**
+     * @return Number of inputs
+     */
+    public int getInputs() {
+        return sizes[0];
+    }
+
+    /**
+     * @return Number of outputs
+     */
+    public int getOutputs() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Evaluates one input.
+     *
+     * @param input Input, getInputs() long
+     * @return Output
+     */
+    public double[] output(double[] input) {
+        double[] out = new double[getOutputs()];
+        outputs(input, 1, out);
+        return out;
+    }
+
+    /**
+     * Evaluates a batch of inputs, one after the other in the input array.
+     *
+     * @param inputs Inputs, batch * getInputs() long
+     * @param batch Number of inputs
+     * @param out Outputs, batch * getOutputs() long
+     */
+    public void outputs(double[] inputs, int batch, double[] out) {
+        forward(0, inputs, batch, out);
+    }
+
+    /**
+     * Evaluates a batch from the outputs of layer from on.
+     */
+    private void forward(int from, double[] layer, int batch, double[] out) {
+        for (int l = from; l + 1 < sizes.length; l++) {
+            double[] next = l + 2 == sizes.length
+                    ? out : new double[batch * sizes[l + 1]];
+            affine(l, layer, batch, next);
+            activate(l, next, batch * sizes[l + 1]);
+            layer = next;
+        }
+    }
+
+    /**
+     * Evaluates the moves of a position: the input of each candidate is the
+     * input of the position with 1 at the candidate's field. All candidates
+     * are evaluated as one batch.
+     * <p>
+     * The candidates differ from the position in one input, so the weighted
+     * sums of the first layer are computed once for the position, and each
+     * candidate only adds the weights of its field.
+     *
+     * @param input Input of the position
+     * @param candidates Fields, indices into the input
+     * @param count Number of candidates
+     * @param out First output of each candidate, count long
+     */
+    public void scoreMoves(double[] input, int[] candidates, int count,
+            double[] out) {
+        double[] sums = new double[sizes[1]];
+        affine(0, input, 1, sums);
+        scoreMoves(sums, input, candidates, count, out);
+    }
+
+    /**
+     * Evaluates the moves of a position from the weighted sums of the first
+     * layer of the position.
+     *
+     * @param sums Weighted sums of the first layer, biases included
+     * @param input Input of the position at the candidates' fields, null if
+     * they are all 0
+     * @param candidates Fields, indices into the input
+     * @param count Number of candidates
+     * @param out First output of each candidate, count long
+     */
+    void scoreMoves(double[] sums, double[] input, int[] candidates, int count,
+            double[] out) {
+        int m = sizes[1];
+        double[] w = weights[0];
+        double[] first = new double[count * m];
+        for (int c = 0; c < count; c++) {
+            int field = candidates[c];
+            double x = input == null ? 1.0 : 1.0 - input[field];
+            int row = c * m;
+            int col = field * m;
+            for (int j = 0; j < m; j++) {
+                first[row + j] = sums[j] + x * w[col + j];
+            }
+        }
+        activate(0, first, count * m);
+
+        int outputs = getOutputs();
+        double[] all;
+        if (sizes.length == 2) {
+            all = first;
+        } else {
+            all = outputs == 1 ? out : new double[count * outputs];
+            forward(1, first, count, all);
+        }
+        if (all != out) {
+            for (int c = 0; c < count; c++) {
+                out[c] = all[c * outputs];
+            }
+        }
+    }
+
+    /**
+     * Computes the weighted sums of layer l + 1 of a batch.
+     */
+    private void affine(int l, double[] in, int batch, double[] out) {
+        int n = sizes[l];
+        int m = sizes[l + 1];
+        double[] w = weights[l];
+        double[] bias = biases[l];
+        for (int b = 0; b < batch; b++) {
+            int row = b * m;
+            System.arraycopy(bias, 0, out, row, m);
+            for (int i = 0; i < n; i++) {
+                double x = in[b * n + i];
+                if (x == 0.0) {
+                    continue;
+                }
+                int col = i * m;
+                for (int j = 0; j < m; j++) {
+                    out[row + j] += x * w[col + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the activation of layer l + 1 to the first count sums.
+     */
+    void activate(int l, double[] sums, int count) {
+        double slope = slopes[l];
+        switch (activations[l]) {
+            case SIGMOID:
+                for (int k = 0; k < count; k++) {
+                    sums[k] = sigmoid(sums[k], slope);
+                }
+                break;
+            case TANH:
+                for (int k = 0; k < count; k++) {
+                    sums[k] = tanh(sums[k], slope);
+                }
+                break;
+            default:
+                for (int k = 0; k < count; k++) {
+                    sums[k] *= slope;
+                }
+        }
+    }
+
+    /**
+     * Logistic function, saturated like Neuroph's far from 0.
+     */
+    private static double sigmoid(double net, double slope) {
+        if (net > 100) {
+            return 1.0;
+        } else if (net < -100) {
+            return 0.0;
+        }
+        return 1.0 / (1.0 + Math.exp(-slope * net));
+    }
+
+    /**
+     * Neuroph's tanh, (e^(slope * net) - 1) / (e^(slope * net) + 1), which is
+     * tanh(slope * net / 2), saturated far from 0.
+     */
+    static double tanh(double net, double slope) {
+        if (net > 100) {
+            return 1.0;
+        } else if (net < -100) {
+            return -1.0;
+        }
+        return Math.tanh(slope * net / 2);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("DenseNetwork(");
+        for (int l = 0; l < sizes.length; l++) {
+            s.append(l > 0 ? "-" : "").append(sizes[l]);
+        }
+        return s.append(", ").append(activations[0]).append(')').toString();
+    }
+}
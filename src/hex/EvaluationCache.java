@@ -0,0 +1,295 @@
+package hex;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class <tt>EvaluationCache</tt> is a transposition table of evaluated
+ * positions. It maps a position, with the player on the move, to the
+ * statistics of all of its candidate moves, so a position that comes up
+ * again (the empty board, the first few moves of self-play games) doesn't
+ * have to be evaluated again.
+ * <p>
+ * The table has a fixed number of slots, grouped in buckets of four. A
+ * position can only be stored in the bucket its hash points to, and when
+ * the bucket is full one of its entries is dropped by the eviction policy.
+ * Slots are replaced with CAS, so any number of threads can use the cache
+ * without locks. A store that loses a race is simply dropped.
+ * <p>
+ * A canonical cache keys a position by itself or its rotation by 180
+ * degrees, whichever has the smaller hash (see
+ * <tt>Board.canonicalRotation</tt>), so the two share one entry. The
+ * diagonal mirrors swap the player on the move and never lead to a position
+ * reached by alternating moves, so they aren't tried. Moves are stored in
+ * the coordinates of the key and mapped back on lookup.
+ * <p>
+ * Entries don't know how they were evaluated, so a cache should only be
+ * shared by players with the same settings.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class EvaluationCache {
+
+    /**
+     * Number of slots in a bucket.
+     */
+    public static final int BUCKET_SIZE = 4;
+
+    /**
+     * All slots, bucket b is slots b * BUCKET_SIZE to (b + 1) * BUCKET_SIZE - 1.
+     */
+    private final AtomicReferenceArray<Entry> slots;
+
+    /**
+     * Number of buckets - 1, the number of buckets is a power of two.
+     */
+    private final int bucketMask;
+
+    private final EvictionPolicy policy;
+
+    /**
+     * Should a position and its rotation by 180 degrees share a key.
+     */
+    private final boolean canonical;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Initializes a new cache.
+     *
+     * @param capacity Largest number of positions, rounded up to a power of
+     * two
+     * @param policy Which entry to drop when a bucket is full
+     */
+    public EvaluationCache(int capacity, EvictionPolicy policy) {
+        this(capacity, policy, false);
+    }
+
+    /**
+     * Initializes a new cache.
+     *
+     * @param capacity Largest number of positions, rounded up to a power of
+     * two
+     * @param policy Which entry to drop when a bucket is full
+     * @param canonical true to key a position and its rotation by 180
+     * degrees alike
+     */
+    public EvaluationCache(int capacity, EvictionPolicy policy,
+            boolean canonical) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        int buckets = Integer.highestOneBit(
+                Math.max(1, (capacity + BUCKET_SIZE - 1) / BUCKET_SIZE) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(buckets * BUCKET_SIZE);
+        this.bucketMask = buckets - 1;
+        this.policy = policy;
+        this.canonical = canonical;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Looks up the evaluation of a position.
+     *
+     * @param b Board with the position
+     * @return Copy of the stored moves, null if the position isn't cached
+     */
+    public MCSimulationMove[] get(Board b) {
+        BoardSymmetry s = symmetry(b);
+        Board key = s == BoardSymmetry.IDENTITY ? b : b.transform(s);
+        int start = bucket(key.getHash());
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.position.matches(key)) {
+                entry.lastUsed = System.nanoTime();
+                hits.increment();
+                return map(entry.moves, s, b.getSize());
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores the evaluation of a position. If the position is already in the
+     * cache, the evaluation that took more work is kept.
+     *
+     * @param b Board with the position
+     * @param moves Evaluated candidate moves
+     * @param effort How much work the evaluation took, e.g. number of
+     * playouts
+     */
+    public void put(Board b, MCSimulationMove[] moves, long effort) {
+        BoardSymmetry s = symmetry(b);
+        Board key = s == BoardSymmetry.IDENTITY ? b : b.transform(s);
+        Entry entry = new Entry(key.snapshot(), map(moves, s, b.getSize()),
+                effort);
+        int start = bucket(key.getHash());
+        int victim = -1;
+        Entry victimEntry = null;
+
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            Entry current = slots.get(i);
+            if (current == null) {
+                if (slots.compareAndSet(i, null, entry)) {
+                    stores.increment();
+                    return;
+                }
+                //another thread took the slot, maybe with this position
+                i--;
+                continue;
+            }
+            if (current.position.matches(key)) {
+                if (current.effort <= effort
+                        && slots.compareAndSet(i, current, entry)) {
+                    stores.increment();
+                }
+                return;
+            }
+            if (victimEntry == null || isWorse(current, victimEntry)) {
+                victim = i;
+                victimEntry = current;
+            }
+        }
+
+        if (victimEntry != null && slots.compareAndSet(victim, victimEntry, entry)) {
+            stores.increment();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops all entries. Counters are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    /**
+     * Counts the entries. O(capacity)
+     *
+     * @return Number of cached positions
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the part of lookups that found the position.
+     *
+     * @return Hit rate between 0 and 1, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationCache{" + "policy=" + policy + ", canonical=" + canonical
+                + ", capacity=" + getCapacity()
+                + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", stores=" + getStores() + ", evictions=" + getEvictions() + '}';
+    }
+
+    /**
+     * Returns the symmetry that maps the position to its key.
+     */
+    private BoardSymmetry symmetry(Board b) {
+        return canonical ? b.canonicalRotation() : BoardSymmetry.IDENTITY;
+    }
+
+    /**
+     * Copies moves with their fields mapped by a symmetry. Symmetries are
+     * their own inverses, so the same call maps moves to the key and back.
+     */
+    private static MCSimulationMove[] map(MCSimulationMove[] moves,
+            BoardSymmetry s, int size) {
+        if (s == BoardSymmetry.IDENTITY) {
+            return moves.clone();
+        }
+        MCSimulationMove[] result = new MCSimulationMove[moves.length];
+        for (int iCount = 0; iCount < moves.length; iCount++) {
+            MCSimulationMove move = moves[iCount];
+            result[iCount] = new MCSimulationMove(
+                    s.apply(move.getCoordinates(), size),
+                    move.getProbability(), move.getVisits());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first slot of the bucket of a hash.
+     */
+    private int bucket(long hash) {
+        int h = (int) (hash ^ (hash >>> 32));
+        return (h & bucketMask) * BUCKET_SIZE;
+    }
+
+    /**
+     * Checks if entry a should be dropped before entry b.
+     */
+    private boolean isWorse(Entry a, Entry b) {
+        if (policy == EvictionPolicy.DEPTH_PREFERRED && a.effort != b.effort) {
+            return a.effort < b.effort;
+        }
+        return a.lastUsed - b.lastUsed < 0;
+    }
+
+    /**
+     * Evaluation of one position.
+     */
+    private static final class Entry {
+
+        private final BoardSnapshot position;
+        private final MCSimulationMove[] moves;
+        private final long effort;
+        private volatile long lastUsed;
+
+        Entry(BoardSnapshot position, MCSimulationMove[] moves, long effort) {
+            this.position = position;
+            this.moves = moves;
+            this.effort = effort;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package hex;
+
+/**
+ * How <tt>PlayerMonteCarlo</tt> estimates the value of candidate moves.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public enum EvaluationMode {
+
+    /**
+     * Separate playouts for each of the candidates, each one starting with
+     * the candidate marked.
+     */
+    PER_CANDIDATE,
+
+    /**
+     * Shared random fills of the whole board. A filled board always has
+     * exactly one winner, so each fill credits every empty field that got
+     * the color of the player on the move (all moves as first).
+     */
+    SHARED_FILLS,
+
+    /**
+     * Weighted average of PER_CANDIDATE and SHARED_FILLS estimates.
+     */
+    BLENDED
+}
@@ -0,0 +1,22 @@
+package hex;
+
+/**
+ * Which entry an <tt>EvaluationCache</tt> drops when a new position doesn't
+ * fit.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Drop the entry that was used least recently.
+     */
+    LRU,
+
+    /**
+     * Drop the entry that took the least work to evaluate (fewest playouts),
+     * like depth-preferred replacement in transposition tables. Among equal
+     * ones, the least recently used one is dropped.
+     */
+    DEPTH_PREFERRED
+}
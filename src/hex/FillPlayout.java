@@ -0,0 +1,133 @@
+package hex;
+
+import java.util.Arrays;
+
+/**
+ * Playout that fills all empty fields with a random sequence and only then
+ * checks who won.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class FillPlayout extends Playout {
+
+    /**
+     * Board that the random sequences are overlaid on.
+     */
+    private final Board boardCopy;
+
+    /**
+     * Sequence of 1s and 2s for the empty fields other than the candidate,
+     * shuffled in place before each playout.
+     */
+    private byte[] sequence;
+
+    /**
+     * Number of 1s in the sequence.
+     */
+    private int ones;
+
+    /**
+     * Marks for all of the empty fields, used by shared fills. Allocated on
+     * first use.
+     */
+    private byte[] fill;
+
+    private final Kernels kernels = Kernels.get();
+
+    /**
+     * @param base Position from which the playouts are played
+     * @param boardCopy Board of the same size used as scratch space
+     * @param emptyFields Indices of empty fields of base
+     */
+    FillPlayout(Board base, Board boardCopy, int[] emptyFields) {
+        super(base, emptyFields);
+        this.boardCopy = boardCopy;
+        makeSequence();
+    }
+
+    @Override
+    void retarget(Board base, int[] emptyFields) {
+        super.retarget(base, emptyFields);
+        makeSequence();
+        if (fill != null && fill.length != emptyFields.length) {
+            fill = null;
+        }
+    }
+
+    /**
+     * Makes the sequence for the base position, the board copy is kept.
+     */
+    private void makeSequence() {
+        sequence = PlayerMonteCarlo.getSequence(movesPlayed,
+                base.size * base.size);
+        int count = 0;
+        for (byte b : sequence) {
+            if (b == 1) { count++; }
+        }
+        ones = count;
+    }
+
+    @Override
+    int run(int candidate, int repetitions) {
+        int wins = 0;
+
+        //start from the sorted sequence, so that the result depends only on
+        //the seed and not on the playouts this worker ran before
+        Arrays.fill(sequence, 0, ones, (byte) 1);
+        Arrays.fill(sequence, ones, sequence.length, (byte) 2);
+
+        for (int repetition = 0; repetition < repetitions; repetition++) {
+
+            //shuffle the sequence, any permutation of it is as good a start
+            //as the sorted one
+            PlayerMonteCarlo.shuffleArray(sequence, random);
+
+            //mark candidate field as this player's and overlay the random
+            //sequence on the rest of the empty fields
+            boardCopy.overlay(base, emptyFields, candidate,
+                    (byte) (player + 1), sequence);
+            fieldsPlayed += emptyFields.length;
+
+            //check if this player won
+            if (PlayerMonteCarlo.didIWin(boardCopy, player)) {
+                wins++;
+            }
+        }
+
+        return wins;
+    }
+
+    /**
+     * Fills all empty fields, including the one the player on the move would
+     * take, with random sequences. Every empty field that got the mark of the
+     * player on the move is credited with the result of the fill, so one fill
+     * scores all of the candidates at once.
+     *
+     * @param repetitions How many fills to make
+     * @param wins Output, fills won by the player on the move, per field
+     * @param counts Output, fills in which the player on the move got the
+     * field, per field
+     * @param offset Where in wins and counts to start writing
+     */
+    void runShared(int repetitions, int[] wins, int[] counts, int offset) {
+        byte mark = (byte) (player + 1);
+        int n = emptyFields.length;
+
+        //the player on the move starts, so he gets the extra field
+        if (fill == null) {
+            fill = new byte[n];
+        }
+        int mine = (n + 1) / 2;
+        Arrays.fill(fill, 0, mine, mark);
+        Arrays.fill(fill, mine, n, (byte) (3 - mark));
+
+        for (int repetition = 0; repetition < repetitions; repetition++) {
+            PlayerMonteCarlo.shuffleArray(fill, random);
+            boardCopy.overlay(base, emptyFields, -1, mark, fill);
+            fieldsPlayed += n;
+
+            boolean won = PlayerMonteCarlo.didIWin(boardCopy, player);
+            kernels.credit(fill, mark, won, counts, wins, offset);
+        }
+    }
+}
@@ -27,9 +27,25 @@ public class Game {
      * four entries represent added fields: ufSize - 4 & ufSize - 3 => player 1
      * ufSize - 2 & ufSize - 1 => player 2
      */
-    protected final UF unionFind;
+    protected final RollbackUF unionFind;
     protected final int ufSize;
 
+    /**
+     * Union find checkpoints taken before each of the moves played, used to
+     * take moves back.
+     */
+    protected final int[] checkpoints;
+
+    /**
+     * Shared geometry of the board.
+     */
+    protected final HexGeometry geometry;
+
+    /**
+     * Should players that can ponder think on the opponent's time.
+     */
+    private boolean pondering;
+
     /**
      * Initializes a new game.
      *
@@ -43,8 +59,22 @@ public class Game {
         this.players[0] = first;
         this.players[1] = second;
         this.board = b;
-        this.ufSize = b.size * b.size + 4;
-        this.unionFind = new UF(ufSize);
+        this.geometry = b.getGeometry();
+        this.ufSize = geometry.fields + 4;
+        this.unionFind = new RollbackUF(ufSize);
+        this.checkpoints = new int[geometry.fields];
+        this.pondering = false;
+    }
+
+    /**
+     * Sets if players that implement PonderingPlayer should keep thinking
+     * while the opponent is on the move. Off by default, a pondering player
+     * keeps the tree it grows while pondering.
+     *
+     * @param pondering true to let players ponder
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
     }
 
     /**
@@ -64,33 +94,34 @@ public class Game {
     }
 
     /**
-     * Starts the game. Players take turns until one of them wins.
+     * Starts the game. Players take turns until one of them wins. A player
+     * that can ponder thinks about the position while the opponent is on the
+     * move.
      */
     public void play() {
         int winningPlayer = 0;
 
-        //while game isn't over
-        while (winningPlayer == 0) {
-            //players take turns based on number of moves played so far
-            Coordinate move = players[movesPlayed % 2].makeMove(board);
+        try {
+            //while game isn't over
+            while (winningPlayer == 0) {
+                //players take turns based on number of moves played so far
+                Player player = players[movesPlayed % 2];
+                Coordinate move = player.makeMove(board);
 
-            //players[0]'s mark is 1 and player[1]'s mark is 2
-            board.putMark(move, (byte) (movesPlayed % 2 + 1));
-            //connect the field to its neighbors of the same color
-            Coordinate[] sameColorNeighbors = findFieldsNeighborsOfSameColor(move);
+                playMove(geometry.index(move));
 
-            for (Coordinate neighbor : sameColorNeighbors) {
-                unionFind.union(getFieldIndex(move), getFieldIndex(neighbor));
+                winningPlayer = whoWon();
+                if (winningPlayer == 0 && pondering 
+                        && player instanceof PonderingPlayer) {
+                    ((PonderingPlayer) player).startPondering(board);
+                }
             }
-
-            //check if added nodes need to get connected
-            if (isFieldOnPlayersEdge(move)) {
-                unionFind.union(getFieldIndex(move), getIndexOfAddedNodeInUF(move));
+        } finally {
+            for (Player player : players) {
+                if (player instanceof PonderingPlayer) {
+                    ((PonderingPlayer) player).stopPondering();
+                }
             }
-
-            movesPlayed++;
-
-            winningPlayer = whoWon();
         }
 
         System.out.println(board);
@@ -98,99 +129,86 @@ public class Game {
     }
 
     /**
-     * Checks if the field is on one of the edges of the board.
+     * Marks the field for the player on the move (players[0]'s mark is 1 and
+     * player[1]'s mark is 2) and connects it to its neighbors of the same
+     * color.
      *
-     * @param c Coordinates of the field
-     * @return true if field is on the edge, false otherwise
-     */
-    protected boolean isFieldOnPlayersEdge(Coordinate c) {
-        int size = board.size - 1;
-        int player = movesPlayed % 2;
-
-        //for the first player check vertical edges
-        if (player == 0) {
-            return c.row == 0 || c.row == size;
-        } //for the second player check horizontal edges
-        else {
-            return c.col == 0 || c.col == size;
+     * @param field Index of the field
+     * @throws IllegalArgumentException if the field is already marked
+     */
+    protected void playMove(int field) {
+        if (!board.makeMove(field)) {
+            throw new IllegalArgumentException("Field " + field
+                    + " is already marked.");
         }
+        checkpoints[movesPlayed] = unionFind.checkpoint();
+        connectField(field);
+        movesPlayed++;
     }
 
     /**
-     * Calculates index of the field in the union find.
+     * Takes back the last move played.
      *
-     * @param c Coordinates of the field
-     * @return Index of the field in the union find
+     * @return true if a move was taken back, false if there was none
      */
-    protected int getFieldIndex(Coordinate c) {
-        return c.row * board.size + c.col;
+    public boolean undoMove() {
+        if (board.undoMove() < 0) {
+            return false;
+        }
+        movesPlayed--;
+        unionFind.rollback(checkpoints[movesPlayed]);
+        return true;
     }
 
     /**
-     * Determines added node's index in union find based on the field.
+     * Plays the last move that was taken back again.
      *
-     * @param c Coordinates of the field on the edge whose added edge needs to
-     * be found
-     * @return Index of the added edge in union find
-     */
-    protected int getIndexOfAddedNodeInUF(Coordinate c) {
-        int player = movesPlayed % 2;
-
-       //added node for the up side
-        if      (c.row == 0              && player == 0) { return ufSize - 4; }
-        //added node for the down side
-        else if (c.row == board.size - 1 && player == 0) { return ufSize - 3; }
-        //added node for the left side
-        else if (c.col == 0              && player == 1) { return ufSize - 2; }
-        //added node for the right side
-        else if (c.col == board.size - 1 && player == 1) { return ufSize - 1; }
-
-        return 0;
+     * @return true if a move was played, false if there was none
+     */
+    public boolean redoMove() {
+        int field = board.redoMove();
+        if (field < 0) {
+            return false;
+        }
+        checkpoints[movesPlayed] = unionFind.checkpoint();
+        connectField(field);
+        movesPlayed++;
+        return true;
     }
 
     /**
-     * Finds neighbors of the field.
+     * Connects a marked field in the union find to its neighbors of the same
+     * color and, if it's on one of its player's edges, to the added node of
+     * that edge.
      *
-     * @param c Coordinates of the field
-     * @return Array of coordinates of the neighbors of the field
-     */
-    protected Coordinate[] findFieldsNeighborsOfSameColor(Coordinate c) {
-        byte color = board.matrix[c.row][c.col];
-
-        //list of all possible neighbors, even the illegal ones
-        Coordinate[] neighbors = new Coordinate[6];
-        neighbors[0] = new Coordinate(c.row - 1, c.col    );
-        neighbors[1] = new Coordinate(c.row - 1, c.col + 1);
-        neighbors[2] = new Coordinate(c.row,     c.col - 1);
-        neighbors[3] = new Coordinate(c.row,     c.col + 1);
-        neighbors[4] = new Coordinate(c.row + 1, c.col - 1);
-        neighbors[5] = new Coordinate(c.row + 1, c.col    );
-
-        //remove illegal neighbors & neighbors of different color (very racist)
-        int nullCount = 0;
-        for (int iCount = 0; iCount < 6; iCount++) {
-            Coordinate n = neighbors[iCount];
-            if (n.row < 0 || n.row >= board.size
-                    || n.col < 0 || n.col >= board.size
-                    || board.matrix[n.row][n.col] != color) {
-                neighbors[iCount] = null;
-                nullCount++;
+     * @param field Index of the field
+     */
+    protected void connectField(int field) {
+        byte color = board.getMark(field);
+
+        for (int k = 0; k < geometry.neighborCount(field); k++) {
+            int neighbor = geometry.neighbor(field, k);
+            if (board.getMark(neighbor) == color) {
+                unionFind.union(field, neighbor);
             }
         }
 
-        //create a new array without null values and return that array
-        Coordinate[] result = new Coordinate[6 - nullCount];
-        int resultCount = 0;
-
-        for (int iCount = 0; iCount < 6; iCount++) {
-            Coordinate n = neighbors[iCount];
-            if (n == null) {
-                continue;
+        //first player's edges are up and down, second player's left and right
+        int firstEdge = color == 1 ? HexGeometry.TOP : HexGeometry.LEFT;
+        for (int edge = firstEdge; edge <= firstEdge + 1; edge++) {
+            if (geometry.isOnEdge(edge, field)) {
+                unionFind.union(field, getIndexOfAddedNode(edge));
             }
-            result[resultCount] = n;
-            resultCount++;
         }
+    }
 
-        return result;
+    /**
+     * Determines added node's index in union find.
+     *
+     * @param edge HexGeometry.TOP, BOTTOM, LEFT or RIGHT
+     * @return Index of the added node in union find
+     */
+    protected int getIndexOfAddedNode(int edge) {
+        return ufSize - 4 + edge;
     }
-}
\ No newline at end of file
+}
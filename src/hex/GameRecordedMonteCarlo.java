@@ -10,15 +10,20 @@ import java.util.LinkedList;
  */
 public class GameRecordedMonteCarlo extends Game {
 
+    /**
+     * Number of Monte Carlo repetitions each random board is evaluated with.
+     */
+    public static final int RANDOM_BOARD_REPETITIONS = 10000;
+
     /**
      * Array of players.
      */
     protected final PlayerMonteCarlo[] players;
 
     /**
-     * Array of moves played. Used in statistic.
+     * Positions after each of the moves played. Used in statistic.
      */
-    protected LinkedList<Board> moves;
+    protected LinkedList<BoardSnapshot> moves;
     protected LinkedList<Double> probabilities;
     /**
      * Linked list of arrays of all possible moves with respective probabilities
@@ -31,6 +36,11 @@ public class GameRecordedMonteCarlo extends Game {
      */
     protected boolean normalizeProbabilities;
 
+    /**
+     * Evaluations of random boards seen before, null if there's no cache.
+     */
+    private EvaluationCache randomBoardsCache;
+
     public GameRecordedMonteCarlo(
             Board b,
             PlayerMonteCarlo first,
@@ -59,38 +69,21 @@ public class GameRecordedMonteCarlo extends Game {
             MCSimulationMove[] allPossibleMoves = players[movesPlayed % 2].makeMoveWithProbability(board);
 
             //first move is one with heighest probability - by convention
-            //players[0]'s mark is 1 and player[1]'s mark is 2
-            board.putMark(allPossibleMoves[0].getCoordinates(), (byte) (movesPlayed % 2 + 1));
+            playMove(geometry.index(allPossibleMoves[0].getCoordinates()));
 
             //add board to moves
-            moves.add(board.deepCopy());
+            moves.add(board.snapshot());
             //add probabilities
             probabilities.add(allPossibleMoves[0].getProbability());
 
             unplayedMoves.add(allPossibleMoves);
 
-            //connect the field to its neighbors of the same color
-            Coordinate[] sameColorNeighbors
-                    = findFieldsNeighborsOfSameColor(allPossibleMoves[0].getCoordinates());
-
-            for (Coordinate neighbor : sameColorNeighbors) {
-                unionFind.union(getFieldIndex(allPossibleMoves[0].getCoordinates()),
-                        getFieldIndex(neighbor));
-            }
-
-            //check if added nodes need to get connected
-            if (isFieldOnPlayersEdge(allPossibleMoves[0].getCoordinates())) {
-                unionFind.union(getFieldIndex(allPossibleMoves[0].getCoordinates()),
-                        getIndexOfAddedNodeInUF(allPossibleMoves[0].getCoordinates()));
-            }
-
-            movesPlayed++;
-
             winningPlayer = whoWon();
             
             //if player 1, make random moves
             if (movesPlayed % 2 == 1 && movesPlayed >= 5) {
-                randomMoves.addAll(RandomBoardGenerator.evaluateRandomBoards(board, 10000, 2, 1, 5));
+                randomMoves.addAll(RandomBoardGenerator.evaluateRandomBoards(
+                        board, RANDOM_BOARD_REPETITIONS, 2, 1, 5, randomBoardsCache));
             }
         }
 
@@ -98,7 +91,24 @@ public class GameRecordedMonteCarlo extends Game {
         System.out.println("Player " + winningPlayer + " wins!");
     }
 
-    public LinkedList<Board> getAllMoves() {
+    public EvaluationCache getRandomBoardsCache() {
+        return randomBoardsCache;
+    }
+
+    /**
+     * Sets the cache of evaluated random boards. Random boards are a few
+     * random moves after the positions of the game, and openings repeat from
+     * game to game, so the cache is worth keeping for all games. It holds
+     * evaluations with RANDOM_BOARD_REPETITIONS playouts and shouldn't be
+     * shared with players.
+     *
+     * @param cache Cache, null for none
+     */
+    public void setRandomBoardsCache(EvaluationCache cache) {
+        this.randomBoardsCache = cache;
+    }
+
+    public LinkedList<BoardSnapshot> getAllMoves() {
         return this.moves;
     }
 
@@ -127,7 +137,7 @@ public class GameRecordedMonteCarlo extends Game {
         StringBuilder sb = new StringBuilder();
 
         for (int moveCount = 0; moveCount < this.moves.size(); moveCount++) {
-            Board move = this.moves.get(moveCount);
+            BoardSnapshot move = this.moves.get(moveCount);
             sb.append(move.toSingleRowString(moveCount % 2 != 0));
             int repetitions = moveCount % 2 == 0
                     ? this.players[0].getNumberOfRepetitions()
@@ -199,7 +209,7 @@ public class GameRecordedMonteCarlo extends Game {
 
         StringBuilder sb = new StringBuilder();
         //create emptyboard
-        Board copyBoard = new Board(this.moves.get(0).size);
+        Board copyBoard = new Board(this.moves.get(0).getSize());
 
         int length = this.unplayedMoves.get(0).length;
         MCSimulationMove[] a = this.unplayedMoves.get(0);
@@ -220,9 +230,14 @@ public class GameRecordedMonteCarlo extends Game {
         int skip = firstPlayerOnly ? 1 : 0;
         //for all other unplayed moves, play on board after previous move 
 
+        int played = 0;
         for (int i = 1 + skip; i < this.moves.size(); i += 1 + skip) {
-            //copy board as is after previous move
-            copyBoard = this.moves.get(i - 1).deepCopy();
+            //bring the board to the position after previous move
+            while (played < i) {
+                copyBoard.makeMove(geometry.index(
+                        this.unplayedMoves.get(played)[0].getCoordinates()));
+                played++;
+            }
             int repetitions = i % 2 == 0
                     ? this.players[0].getNumberOfRepetitions()
                     : this.players[1].getNumberOfRepetitions();
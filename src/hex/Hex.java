@@ -16,6 +16,14 @@ import java.util.Map.Entry;
  */
 public class Hex {
 
+    /**
+     * Number of positions each player, and the random boards, keep in their
+     * evaluation cache when recording games. Openings repeat from game to game and take the most
+     * playouts, so they are kept first (depth-preferred). Positions are keyed
+     * by their canonical form, so rotated openings share an entry.
+     */
+    private static final int CACHE_SIZE = 1 << 16;
+
     /**
      * @param args the command line arguments
      * @throws java.io.IOException
@@ -70,12 +78,24 @@ public class Hex {
             boolean normalizeProbabilities,
             boolean randomBest) throws IOException {
         
+        EvaluationCache firstCache = 
+                new EvaluationCache(CACHE_SIZE, EvictionPolicy.DEPTH_PREFERRED, true);
+        EvaluationCache secondCache = 
+                new EvaluationCache(CACHE_SIZE, EvictionPolicy.DEPTH_PREFERRED, true);
+        EvaluationCache randomBoardsCache = 
+                new EvaluationCache(CACHE_SIZE, EvictionPolicy.DEPTH_PREFERRED, true);
+        
         try (Writer writer = new BufferedWriter(new FileWriter(new File(file),true))) {
             for (int iCount = 0; iCount < noOfGames; iCount++) {
                 Board board = new Board(boardSize);
                 PlayerMonteCarlo first = new PlayerMonteCarlo(MCRepetitionsPlayer1, paralelization, randomBest);
                 PlayerMonteCarlo second = new PlayerMonteCarlo(MCRepetitionsPlayer2, paralelization, randomBest);
+                first.setCache(firstCache);
+                second.setCache(secondCache);
+                first.setSymmetry(true);
+                second.setSymmetry(true);
                 GameRecordedMonteCarlo g = new GameRecordedMonteCarlo(board, first, second, normalizeProbabilities);
+                g.setRandomBoardsCache(randomBoardsCache);
                 try {
                     g.play();
                 //    writer.write(g.gameStats());
@@ -104,7 +124,11 @@ public class Hex {
         HashMap<Integer,Integer> counter = new HashMap<>();
         
         for(int i = 0; i < numberOfPlayers; i++){
-            players.add(new PlayerMonteCarlo(args[i * 2], paralelization,false));
+            PlayerMonteCarlo player = new PlayerMonteCarlo(args[i * 2], paralelization,false);
+            player.setCache(new EvaluationCache(CACHE_SIZE, 
+                    EvictionPolicy.DEPTH_PREFERRED, true));
+            player.setSymmetry(true);
+            players.add(player);
             frequencies.add(args[i * 2 + 1]);
             counter.put(args[i * 2], 0);
         }
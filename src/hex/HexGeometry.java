@@ -0,0 +1,377 @@
+package hex;
+
+import java.util.Random;
+
+/**
+ * Class <tt>HexGeometry</tt> holds precomputed geometry of a Hex board of one
+ * size: flat field indices, neighbors of every field and edge memberships.
+ * Instances are immutable and shared between all boards of the same size, so
+ * game loops can look up geometry without allocating anything.
+ * <p>
+ * Field (row, col) has index row * size + col, the same index that is used in
+ * the bitsets of the <tt>Board</tt> and in the union find of the
+ * <tt>Game</tt>.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class HexGeometry {
+
+    /**
+     * Edge identifiers. First player (vertical) connects TOP and BOTTOM,
+     * second player (horizontal) connects LEFT and RIGHT.
+     */
+    public static final int TOP = 0;
+    public static final int BOTTOM = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    /**
+     * Largest board side size for which geometry is cached.
+     */
+    private static final int MAX_CACHED_SIZE = 64;
+
+    /**
+     * Geometries created so far, indexed by board side size.
+     */
+    private static final HexGeometry[] CACHE = new HexGeometry[MAX_CACHED_SIZE + 1];
+
+    /**
+     * Board side size.
+     */
+    final int size;
+
+    /**
+     * Number of fields on the board, size * size.
+     */
+    final int fields;
+
+    /**
+     * Number of longs in a bitset of the board.
+     */
+    final int words;
+
+    /**
+     * Neighbors of each field, six slots per field. Only the first
+     * neighborCount[field] slots of a field are used.
+     */
+    private final int[] neighbors;
+
+    /**
+     * Number of neighbors of each field (between 2 and 6).
+     */
+    private final byte[] neighborCount;
+
+    /**
+     * Bitsets of fields on each of the edges, indexed by TOP, BOTTOM, LEFT and
+     * RIGHT.
+     */
+    final long[][] edges;
+
+    /**
+     * Bitset of all fields on the board. Bits past the last field are 0.
+     */
+    final long[] boardMask;
+
+    /**
+     * Bitset of all fields except the ones in the first column.
+     */
+    final long[] notFirstCol;
+
+    /**
+     * Bitset of all fields except the ones in the last column.
+     */
+    final long[] notLastCol;
+
+    /**
+     * Zobrist keys of marks, zobrist[(mark - 1) * fields + field].
+     */
+    private final long[] zobrist;
+
+    /**
+     * Zobrist key that is mixed into the hash when the second player is on
+     * the move.
+     */
+    final long secondPlayerToMoveKey;
+
+    /**
+     * Creates geometry for a board of given size.
+     *
+     * @param size Board side size
+     */
+    private HexGeometry(int size) {
+        this.size = size;
+        this.fields = size * size;
+        this.words = (fields + 63) >>> 6;
+        this.neighbors = new int[fields * 6];
+        this.neighborCount = new byte[fields];
+        this.edges = new long[4][words];
+        this.boardMask = new long[words];
+        this.notFirstCol = new long[words];
+        this.notLastCol = new long[words];
+        this.zobrist = new long[2 * fields];
+
+        //fixed seed, so that hashes are the same in every run
+        Random random = new Random(0x5DEECE66DL * size);
+        for (int i = 0; i < zobrist.length; i++) {
+            zobrist[i] = random.nextLong();
+        }
+        this.secondPlayerToMoveKey = random.nextLong();
+
+        //row and column offsets of the six neighbors of a hex field
+        int[] dRow = {-1, -1,  0, 0, 1, 1};
+        int[] dCol = { 0,  1, -1, 1, -1, 0};
+
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int i = row * size + col;
+                long bit = 1L << i;
+                int w = i >>> 6;
+
+                byte count = 0;
+                for (int k = 0; k < 6; k++) {
+                    int r = row + dRow[k];
+                    int c = col + dCol[k];
+                    if (r >= 0 && r < size && c >= 0 && c < size) {
+                        neighbors[i * 6 + count] = r * size + c;
+                        count++;
+                    }
+                }
+                neighborCount[i] = count;
+
+                boardMask[w] |= bit;
+                if (row == 0)        { edges[TOP][w] |= bit; }
+                if (row == size - 1) { edges[BOTTOM][w] |= bit; }
+                if (col == 0)        { edges[LEFT][w] |= bit; }
+                else                 { notFirstCol[w] |= bit; }
+                if (col == size - 1) { edges[RIGHT][w] |= bit; }
+                else                 { notLastCol[w] |= bit; }
+            }
+        }
+    }
+
+    /**
+     * Returns the shared geometry of boards of given size.
+     *
+     * @param size Board side size
+     * @return Geometry of the board
+     */
+    public static HexGeometry forSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Board size must be positive.");
+        }
+        if (size > MAX_CACHED_SIZE) {
+            return new HexGeometry(size);
+        }
+
+        synchronized (CACHE) {
+            if (CACHE[size] == null) {
+                CACHE[size] = new HexGeometry(size);
+            }
+            return CACHE[size];
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNumberOfFields() {
+        return fields;
+    }
+
+    /**
+     * Calculates the flat index of a field.
+     *
+     * @param row Row of the field
+     * @param col Column of the field
+     * @return Index of the field
+     */
+    public int index(int row, int col) {
+        return row * size + col;
+    }
+
+    /**
+     * Calculates the flat index of a field.
+     *
+     * @param c Coordinates of the field
+     * @return Index of the field
+     */
+    public int index(Coordinate c) {
+        return c.row * size + c.col;
+    }
+
+    public int row(int i) {
+        return i / size;
+    }
+
+    public int col(int i) {
+        return i % size;
+    }
+
+    /**
+     * Returns how many neighbors the field has.
+     *
+     * @param i Index of the field
+     * @return Number of neighbors, between 2 and 6
+     */
+    public int neighborCount(int i) {
+        return neighborCount[i];
+    }
+
+    /**
+     * Returns the k-th neighbor of the field.
+     *
+     * @param i Index of the field
+     * @param k Which neighbor, 0 &le; k &lt; neighborCount(i)
+     * @return Index of the neighbor
+     */
+    public int neighbor(int i, int k) {
+        return neighbors[i * 6 + k];
+    }
+
+    /**
+     * Checks if the field is on the given edge of the board.
+     *
+     * @param edge TOP, BOTTOM, LEFT or RIGHT
+     * @param i Index of the field
+     * @return true if the field is on the edge, false otherwise
+     */
+    public boolean isOnEdge(int edge, int i) {
+        return (edges[edge][i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the Zobrist key of a mark on a field.
+     *
+     * @param mark 1 or 2
+     * @param i Index of the field
+     * @return Zobrist key
+     */
+    public long zobristKey(byte mark, int i) {
+        return zobrist[(mark - 1) * fields + i];
+    }
+
+    /**
+     * Checks if stones connect two edges of the board. Uses a bit-parallel
+     * flood fill: starting from stones on the first edge, the reached set is
+     * spread to all six neighbors with shifts and masks until it touches the
+     * second edge or stops growing. Each step costs a few operations per word
+     * of the bitset, not per field.
+     *
+     * @param stones Bitset of one player's stones
+     * @param from Edge to start from, TOP, BOTTOM, LEFT or RIGHT
+     * @param to Edge to reach
+     * @param scratch At least 2 * words longs, only needed if words &gt; 1
+     * @return true if the edges are connected, false otherwise
+     */
+    boolean connects(long[] stones, int from, int to, long[] scratch) {
+        if (words == 1) {
+            return connects(stones[0], edges[from][0], edges[to][0]);
+        }
+
+        long[] target = edges[to];
+        long[] start = edges[from];
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            scratch[w] = stones[w] & start[w];
+            any |= scratch[w] != 0;
+        }
+
+        int reached = 0;
+        while (any) {
+            for (int w = 0; w < words; w++) {
+                if ((scratch[reached + w] & target[w]) != 0) {
+                    return true;
+                }
+            }
+
+            //spread to all six neighbors
+            int next = words - reached;
+            System.arraycopy(scratch, reached, scratch, next, words);
+            orShiftLeft(scratch, reached, 1, notFirstCol, scratch, next);
+            orShiftRight(scratch, reached, size - 1, notFirstCol, scratch, next);
+            orShiftRight(scratch, reached, 1, notLastCol, scratch, next);
+            orShiftLeft(scratch, reached, size - 1, notLastCol, scratch, next);
+            orShiftLeft(scratch, reached, size, null, scratch, next);
+            orShiftRight(scratch, reached, size, null, scratch, next);
+
+            //keep only own stones and check if anything new was reached
+            boolean grew = false;
+            for (int w = 0; w < words; w++) {
+                scratch[next + w] &= stones[w];
+                grew |= scratch[next + w] != scratch[reached + w];
+            }
+            if (!grew) {
+                return false;
+            }
+            reached = next;
+        }
+        return false;
+    }
+
+    /**
+     * Single word version of connects, for boards up to 8x8.
+     *
+     * @param stones Bitset of one player's stones
+     * @param from Bitset of the first edge
+     * @param to Bitset of the second edge
+     * @return true if the edges are connected, false otherwise
+     */
+    private boolean connects(long stones, long from, long to) {
+        long notFirst = notFirstCol[0];
+        long notLast = notLastCol[0];
+        int up = size - 1;
+
+        long reached = stones & from;
+        while (reached != 0) {
+            if ((reached & to) != 0) {
+                return true;
+            }
+            long next = reached
+                    | (((reached << 1) | (reached >>> up)) & notFirst)
+                    | (((reached >>> 1) | (reached << up)) & notLast)
+                    | (reached << size)
+                    | (reached >>> size);
+            next &= stones;
+            if (next == reached) {
+                return false;
+            }
+            reached = next;
+        }
+        return false;
+    }
+
+    /**
+     * dst |= (src &lt;&lt; k) &amp; mask, on bitsets of this geometry stored at
+     * offsets in arrays.
+     */
+    private void orShiftLeft(long[] src, int srcOff, int k, long[] mask,
+            long[] dst, int dstOff) {
+        int q = k >>> 6;
+        int r = k & 63;
+        for (int w = words - 1; w >= q; w--) {
+            long v = src[srcOff + w - q] << r;
+            if (r != 0 && w - q > 0) {
+                v |= src[srcOff + w - q - 1] >>> (64 - r);
+            }
+            dst[dstOff + w] |= mask == null ? v : v & mask[w];
+        }
+    }
+
+    /**
+     * dst |= (src &gt;&gt;&gt; k) &amp; mask, on bitsets of this geometry stored
+     * at offsets in arrays.
+     */
+    private void orShiftRight(long[] src, int srcOff, int k, long[] mask,
+            long[] dst, int dstOff) {
+        int q = k >>> 6;
+        int r = k & 63;
+        for (int w = 0; w + q < words; w++) {
+            long v = src[srcOff + w + q] >>> r;
+            if (r != 0 && w + q + 1 < words) {
+                v |= src[srcOff + w + q + 1] << (64 - r);
+            }
+            dst[dstOff + w] |= mask == null ? v : v & mask[w];
+        }
+    }
+}
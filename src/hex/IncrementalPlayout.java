@@ -0,0 +1,147 @@
+package hex;
+
+/**
+ * Playout that plays random moves one by one, alternating players, keeps
+ * connectivity in a union find with added edge nodes (same as <tt>Game</tt>)
+ * and stops as soon as one of the players connects his edges. Once a chain is
+ * formed the rest of the board can't change the winner, so the result is the
+ * same as if the whole board was filled.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class IncrementalPlayout extends Playout {
+
+    private final HexGeometry geometry;
+
+    /**
+     * Union find with the marks of the base position already connected.
+     */
+    private UF baseUnionFind;
+
+    /**
+     * Union find of the current playout, reset from baseUnionFind.
+     */
+    private final UF unionFind;
+
+    /**
+     * Marks of the base position and of the current playout.
+     */
+    private final byte[] baseMarks;
+    private final byte[] marks;
+
+    /**
+     * Empty fields still to be played in the current playout.
+     */
+    private final int[] order;
+
+    IncrementalPlayout(Board base, int[] emptyFields) {
+        super(base, emptyFields);
+        this.geometry = base.geometry;
+        this.unionFind = new UF(geometry.fields + 4);
+        this.baseMarks = new byte[geometry.fields];
+        this.marks = new byte[geometry.fields];
+        this.order = new int[geometry.fields];
+        connectBase();
+    }
+
+    @Override
+    void retarget(Board base, int[] emptyFields) {
+        super.retarget(base, emptyFields);
+        connectBase();
+    }
+
+    /**
+     * Connects the marks of the base position in a new base union find.
+     */
+    private void connectBase() {
+        baseUnionFind = new UF(geometry.fields + 4);
+        for (int field = 0; field < geometry.fields; field++) {
+            baseMarks[field] = base.getMark(field);
+        }
+        for (int field = 0; field < geometry.fields; field++) {
+            if (baseMarks[field] != 0) {
+                connect(baseUnionFind, baseMarks, field);
+            }
+        }
+    }
+
+    @Override
+    int run(int candidate, int repetitions) {
+        byte mark = (byte) (player + 1);
+        byte otherMark = (byte) (2 - player);
+        int wins = 0;
+
+        for (int repetition = 0; repetition < repetitions; repetition++) {
+            unionFind.copyFrom(baseUnionFind);
+            System.arraycopy(baseMarks, 0, marks, 0, marks.length);
+
+            //candidate field first, then the rest in random order
+            byte winner = place(emptyFields[candidate], mark);
+            int remaining = 0;
+            for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+                if (iCount != candidate) {
+                    order[remaining++] = emptyFields[iCount];
+                }
+            }
+
+            //players alternate, so each one gets as many fields as in a
+            //random fill; shuffle lazily, only as far as the game lasts
+            byte next = otherMark;
+            while (winner == 0 && remaining > 0) {
+                int index = random.nextInt(remaining);
+                int field = order[index];
+                order[index] = order[--remaining];
+                winner = place(field, next);
+                next = next == mark ? otherMark : mark;
+            }
+
+            if (winner == mark) {
+                wins++;
+            }
+        }
+
+        return wins;
+    }
+
+    /**
+     * Marks a field and checks if that connected player's edges.
+     *
+     * @param field Index of the field
+     * @param mark 1 or 2
+     * @return mark if the player connected his edges, 0 otherwise
+     */
+    private byte place(int field, byte mark) {
+        marks[field] = mark;
+        fieldsPlayed++;
+        connect(unionFind, marks, field);
+
+        int firstEdge = mark == 1 ? HexGeometry.TOP : HexGeometry.LEFT;
+        if (unionFind.connected(geometry.fields + firstEdge,
+                geometry.fields + firstEdge + 1)) {
+            return mark;
+        }
+        return 0;
+    }
+
+    /**
+     * Connects a marked field to its neighbors of the same color and to its
+     * player's edge nodes.
+     */
+    private void connect(UF uf, byte[] marks, int field) {
+        byte color = marks[field];
+
+        for (int k = 0; k < geometry.neighborCount(field); k++) {
+            int neighbor = geometry.neighbor(field, k);
+            if (marks[neighbor] == color) {
+                uf.union(field, neighbor);
+            }
+        }
+
+        int firstEdge = color == 1 ? HexGeometry.TOP : HexGeometry.LEFT;
+        for (int edge = firstEdge; edge <= firstEdge + 1; edge++) {
+            if (geometry.isOnEdge(edge, field)) {
+                uf.union(field, geometry.fields + edge);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package hex;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Class <tt>Kernels</tt> holds the hot loops over flat arrays that can be
+ * run with explicit vector operations. This class is the scalar version,
+ * which runs everywhere, including the Java 8 target of the project.
+ * <p>
+ * When the project is built with a JDK that ships the
+ * <tt>jdk.incubator.vector</tt> module, the build also compiles
+ * <tt>VectorKernels</tt> from src-vector. It is used if the program runs with
+ * <pre>
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ * and uses the widest vectors of the CPU, 256 bits with AVX2 and 512 bits
+ * with AVX-512. Otherwise, or with -Dhex.kernels=scalar, the scalar version
+ * is used. Both give exactly the same results.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+class Kernels {
+
+    private static final Kernels INSTANCE = load();
+
+    /**
+     * Returns the fastest kernels available in this JVM.
+     *
+     * @return Kernels
+     */
+    static Kernels get() {
+        return INSTANCE;
+    }
+
+    private static Kernels load() {
+        if (!"scalar".equals(System.getProperty("hex.kernels"))) {
+            try {
+                return (Kernels) Class.forName("hex.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                //not built, older JVM or the module isn't added
+                Logger.getLogger(Kernels.class.getName()).log(Level.FINE,
+                        "Vector kernels not available.", ex);
+            }
+        }
+        return new Kernels();
+    }
+
+    /**
+     * Returns the name of the kernels, with the vector width if they are
+     * vectorized.
+     *
+     * @return Name of the kernels
+     */
+    String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Converts the marks of a board to neural network input: 1 for the
+     * player's fields, -1 for the opponent's and 0 for empty ones.
+     *
+     * @param vertical Bitset of the first player's fields
+     * @param horizontal Bitset of the second player's fields
+     * @param fields Number of fields
+     * @param player 0 or 1, the player whose fields are 1
+     * @param out Output, at least fields long
+     */
+    void toInput(long[] vertical, long[] horizontal, int fields, byte player,
+            double[] out) {
+        double own = player == 0 ? 1.0 : -1.0;
+        for (int i = 0; i < fields; i++) {
+            long bit = 1L << i;
+            if ((vertical[i >>> 6] & bit) != 0) {
+                out[i] = own;
+            } else if ((horizontal[i >>> 6] & bit) != 0) {
+                out[i] = -own;
+            } else {
+                out[i] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Credits one shared fill: every field that got the mark gets a count,
+     * and a win if the fill was won.
+     *
+     * @param fill Marks of the fields
+     * @param mark Mark of the player on the move
+     * @param won true if the player on the move won the fill
+     * @param counts Output, fills in which the player got each field
+     * @param wins Output, won fills in which the player got each field
+     * @param offset Where in counts and wins to start writing
+     */
+    void credit(byte[] fill, byte mark, boolean won, int[] counts,
+            int[] wins, int offset) {
+        for (int i = 0; i < fill.length; i++) {
+            if (fill[i] == mark) {
+                counts[offset + i]++;
+                if (won) {
+                    wins[offset + i]++;
+                }
+            }
+        }
+    }
+}
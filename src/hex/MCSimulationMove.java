@@ -7,10 +7,21 @@ package hex;
 public class MCSimulationMove implements Comparable<MCSimulationMove> {
     private final Coordinate coordinate;
     private final Double probability;
+    
+    /**
+     * Number of playouts the estimate is based on, 0 if unknown.
+     */
+    private final int visits;
 
     public MCSimulationMove(Coordinate coordinate, Double simulationsWon) {
+        this(coordinate, simulationsWon, 0);
+    }
+
+    public MCSimulationMove(Coordinate coordinate, Double simulationsWon, 
+            int visits) {
         this.coordinate = coordinate;
         this.probability = simulationsWon;
+        this.visits = visits;
     }
 
     public Coordinate getCoordinates() {
@@ -21,9 +32,13 @@ public class MCSimulationMove implements Comparable<MCSimulationMove> {
         return probability;
     }
 
+    public int getVisits() {
+        return visits;
+    }
+
     @Override
     public String toString() {
-        return "MCSimulationMove{" + "coordinate=" + coordinate + ", probability=" + probability + '}';
+        return "MCSimulationMove{" + "coordinate=" + coordinate + ", probability=" + probability + ", visits=" + visits + '}';
     }
     
     
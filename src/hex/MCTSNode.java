@@ -0,0 +1,283 @@
+package hex;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Node of the UCT search tree of <tt>PlayerMCTS</tt>. Each node is a position
+ * reached by marking one field. Children are expanded one at a time, in an
+ * order that is shuffled on the first expansion, so a node that was visited k
+ * times has at most k children. Most nodes are only visited once, so the
+ * fields and child slots are allocated on the first expansion, not when the
+ * node is created.
+ * <p>
+ * Nodes are shared by all search threads without locks. Counters are updated
+ * atomically, a thread claims the next child to expand with a CAS, and while
+ * a thread is below a node the node carries a virtual loss, so other threads
+ * are steered to other parts of the tree.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class MCTSNode {
+
+    private static final AtomicIntegerFieldUpdater<MCTSNode> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "visits");
+    private static final AtomicIntegerFieldUpdater<MCTSNode> WINS =
+            AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "wins");
+    private static final AtomicIntegerFieldUpdater<MCTSNode> VIRTUAL_LOSS =
+            AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "virtualLoss");
+    private static final AtomicIntegerFieldUpdater<MCTSNode> EXPANDED =
+            AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "expanded");
+    private static final AtomicReferenceFieldUpdater<MCTSNode, Children> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(MCTSNode.class,
+                    Children.class, "children");
+
+    /**
+     * Index of the field marked to reach this node, -1 for the root of a
+     * fresh tree.
+     */
+    final int move;
+
+    /**
+     * Zobrist hash of the position, used to find the node again after moves
+     * were played on the real board.
+     */
+    final long hash;
+
+    /**
+     * Fields and slots of the children, null until the first expansion.
+     */
+    private volatile Children children;
+
+    /**
+     * Number of children claimed for expansion so far.
+     */
+    private volatile int expanded;
+
+    /**
+     * Number of playouts that went through this node.
+     */
+    private volatile int visits;
+
+    /**
+     * Playouts won by the player who marked the field of this node.
+     */
+    private volatile int wins;
+
+    /**
+     * Number of threads that are currently below this node.
+     */
+    private volatile int virtualLoss;
+
+    /**
+     * True if the player who marked the field of this node won with it.
+     */
+    final boolean terminal;
+
+    /**
+     * Creates a node for the position on the board.
+     *
+     * @param move Index of the field marked to reach the position
+     * @param b Board with the position of the node
+     * @param terminal True if the move won the game
+     */
+    MCTSNode(int move, Board b, boolean terminal) {
+        this.move = move;
+        this.hash = b.getHash();
+        this.terminal = terminal;
+    }
+
+    int getVisits() {
+        return visits;
+    }
+
+    int getWins() {
+        return wins;
+    }
+
+    /**
+     * Claims the next child for expansion. The first expansion makes the
+     * child slots and shuffles the order of the fields.
+     *
+     * @param b Board with the position of the node
+     * @param random Generator used to shuffle the expansion order
+     * @return Slot of the child, -1 if all children have been claimed
+     */
+    int claimExpansion(Board b, PlayoutRandom random) {
+        if (terminal) {
+            return -1;
+        }
+        Children c = children;
+        if (c == null) {
+            //threads that lose the race use the winner's slots
+            c = new Children(b.getEmptyFieldIndices(), random);
+            if (!CHILDREN.compareAndSet(this, null, c)) {
+                c = children;
+            }
+        }
+        while (true) {
+            int k = expanded;
+            if (k >= c.untried.length) {
+                return -1;
+            }
+            if (EXPANDED.compareAndSet(this, k, k + 1)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Returns the field of a child slot.
+     *
+     * @param k Slot of the child
+     * @return Index of the field
+     */
+    int untriedField(int k) {
+        return children.untried[k];
+    }
+
+    /**
+     * Publishes an expanded child.
+     *
+     * @param k Slot claimed with claimExpansion
+     * @param child Child node
+     */
+    void setChild(int k, MCTSNode child) {
+        children.nodes.set(k, child);
+    }
+
+    /**
+     * Returns the number of child slots that may hold a child.
+     *
+     * @return Number of claimed slots
+     */
+    int childCount() {
+        Children c = children;
+        return c == null ? 0 : Math.min(expanded, c.untried.length);
+    }
+
+    /**
+     * Returns a child.
+     *
+     * @param k Slot of the child, below childCount()
+     * @return The child, null if it hasn't been published yet
+     */
+    MCTSNode child(int k) {
+        return children.nodes.get(k);
+    }
+
+    /**
+     * Marks that a thread went below this node.
+     */
+    void addVirtualLoss() {
+        VIRTUAL_LOSS.incrementAndGet(this);
+    }
+
+    /**
+     * Records the result of a playout and takes the virtual loss back.
+     *
+     * @param won true if the player who marked the field of this node won
+     */
+    void update(boolean won) {
+        if (won) {
+            WINS.incrementAndGet(this);
+        }
+        VISITS.incrementAndGet(this);
+        VIRTUAL_LOSS.decrementAndGet(this);
+    }
+
+    /**
+     * Picks the child with the highest upper confidence bound (UCB1). Threads
+     * that are below a child count as lost playouts of that child.
+     *
+     * @param exploration Exploration constant
+     * @return Child to descend to, null if no child has been published yet
+     */
+    MCTSNode selectChild(double exploration) {
+        double logVisits = Math.log(Math.max(1, visits + virtualLoss));
+        MCTSNode best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+
+        for (int iCount = 0; iCount < childCount(); iCount++) {
+            MCTSNode child = child(iCount);
+            if (child == null) {
+                continue;
+            }
+            int n = child.visits + child.virtualLoss;
+            double value = n == 0 ? Double.POSITIVE_INFINITY
+                    : child.wins / (double) n
+                    + exploration * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the most visited child, which is the move that is played.
+     *
+     * @return Most visited child, null if there are no children
+     */
+    MCTSNode mostVisitedChild() {
+        MCTSNode best = null;
+        for (int iCount = 0; iCount < childCount(); iCount++) {
+            MCTSNode child = child(iCount);
+            if (child != null && (best == null || child.visits > best.visits)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Looks for a node with the hash among the children and, if depth is 2,
+     * the grandchildren.
+     *
+     * @param hash Zobrist hash of the position
+     * @param depth 1 or 2
+     * @return The node, null if it's not there
+     */
+    MCTSNode find(long hash, int depth) {
+        for (int iCount = 0; iCount < childCount(); iCount++) {
+            MCTSNode child = child(iCount);
+            if (child == null) {
+                continue;
+            }
+            if (child.hash == hash) {
+                return child;
+            }
+            if (depth > 1) {
+                MCTSNode found = child.find(hash, depth - 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fields of the children, in the order they are expanded, and the
+     * children, nodes[k] is reached by marking untried[k]. A slot is null
+     * until the thread that claimed it publishes the child.
+     */
+    private static final class Children {
+
+        private final int[] untried;
+        private final AtomicReferenceArray<MCTSNode> nodes;
+
+        Children(int[] untried, PlayoutRandom random) {
+            for (int i = untried.length - 1; i > 0; i--) {
+                int index = random.nextInt(i + 1);
+                int a = untried[index];
+                untried[index] = untried[i];
+                untried[i] = a;
+            }
+            this.untried = untried;
+            this.nodes = new AtomicReferenceArray<>(untried.length);
+        }
+    }
+}
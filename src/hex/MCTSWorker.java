@@ -0,0 +1,156 @@
+package hex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One search thread of <tt>PlayerMCTS</tt>. Each worker has its own board,
+ * generator and scratch space, and only the tree is shared.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+final class MCTSWorker {
+
+    /**
+     * Generator used for expansion order and random fills.
+     */
+    final PlayoutRandom random;
+
+    /**
+     * Board with the root position, playouts make their moves on it and undo
+     * them before they return.
+     */
+    private Board board;
+
+    /**
+     * Nodes of the current playout, from the root down.
+     */
+    private MCTSNode[] path;
+
+    /**
+     * Board the random fills are overlaid on.
+     */
+    private Board rolloutBoard;
+
+    /**
+     * Reusable sequences of marks for random fills, indexed by number of
+     * empty fields.
+     */
+    private byte[][] fills;
+
+    MCTSWorker(long seed) {
+        this.random = new PlayoutRandom(seed);
+    }
+
+    /**
+     * Prepares the worker for a search from a position.
+     *
+     * @param b Board with the root position
+     */
+    void reset(Board b) {
+        board = b.deepCopy();
+        int fields = b.getSize() * b.getSize();
+        if (rolloutBoard == null || rolloutBoard.getSize() != b.getSize()) {
+            rolloutBoard = new Board(b.getSize());
+            fills = new byte[fields + 1][];
+            path = new MCTSNode[fields + 1];
+        }
+    }
+
+    /**
+     * Plays playouts until the shared count of remaining playouts runs out or
+     * the deadline passes.
+     *
+     * @param root Root of the search
+     * @param exploration Exploration constant of UCB1
+     * @param remaining Playouts left for all workers together
+     * @param deadline System.nanoTime() deadline or PlayoutPool.NO_DEADLINE
+     */
+    void search(MCTSNode root, double exploration, AtomicLong remaining,
+            long deadline) {
+        while (!PlayoutPool.isExpired(deadline)
+                && remaining.getAndDecrement() > 0) {
+            playout(root, exploration);
+        }
+    }
+
+    /**
+     * Plays one playout: selection, expansion, random fill and backup.
+     *
+     * @param root Root of the search
+     * @param exploration Exploration constant of UCB1
+     */
+    void playout(MCTSNode root, double exploration) {
+        MCTSNode node = root;
+        int depth = 0;
+        root.addVirtualLoss();
+        path[0] = root;
+
+        while (!node.terminal) {
+            //expand the next child if there is one left
+            int k = node.claimExpansion(board, random);
+            if (k >= 0) {
+                int field = node.untriedField(k);
+                board.makeMove(field);
+                boolean won = board.getMark(field) == 1
+                        ? board.isVerticalConnected()
+                        : board.isHorizontalConnected();
+                MCTSNode child = new MCTSNode(field, board, won);
+                child.addVirtualLoss();
+                node.setChild(k, child);
+                path[++depth] = child;
+                break;
+            }
+
+            //otherwise descend, unless other threads haven't published
+            //their children yet
+            MCTSNode next = node.selectChild(exploration);
+            if (next == null) {
+                break;
+            }
+            board.makeMove(next.move);
+            next.addVirtualLoss();
+            path[++depth] = next;
+            node = next;
+        }
+        node = path[depth];
+
+        //mark of the player who made the last move
+        byte mover = (byte) (2 - board.whosOnTheMove());
+        byte winner = node.terminal ? mover : randomFill();
+
+        //back the result up, each node counts wins of the player who made it
+        for (int d = depth; d >= 0; d--) {
+            path[d].update(winner == mover);
+            mover = (byte) (3 - mover);
+        }
+
+        for (int d = 0; d < depth; d++) {
+            board.undoMove();
+        }
+    }
+
+    /**
+     * Fills the empty fields of the board randomly, with the player on the
+     * move getting the extra field, and checks who won.
+     *
+     * @return 1 or 2 if first or second player won, respectively
+     */
+    private byte randomFill() {
+        int[] emptyFields = board.getEmptyFieldIndices();
+        int n = emptyFields.length;
+        if (fills[n] == null) {
+            fills[n] = new byte[n];
+        }
+
+        byte[] fill = fills[n];
+        byte mark = (byte) (board.whosOnTheMove() + 1);
+        int mine = (n + 1) / 2;
+        Arrays.fill(fill, 0, mine, mark);
+        Arrays.fill(fill, mine, n, (byte) (3 - mark));
+        PlayerMonteCarlo.shuffleArray(fill, random);
+
+        rolloutBoard.overlay(board, emptyFields, -1, mark, fill);
+        return rolloutBoard.isVerticalConnected() ? (byte) 1 : (byte) 2;
+    }
+}
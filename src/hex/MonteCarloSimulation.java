@@ -1,13 +1,14 @@
 package hex;
 
 /**
- * Class MonteCarloSimulation represents a part of the whole simulation. Each 
- * Monte Carlo simulation works on a subset of all of the empty fields on the 
- * board.
+ * Class MonteCarloSimulation plays the playouts of a subset of the empty
+ * fields on the board on the calling thread, one field after another. Players
+ * run their playouts on a <tt>PlayoutPool</tt>, this class is used by
+ * benchmarks to measure the playouts of a single thread.
  * 
  * @author Ljubo Raicevic <rljubo90@gmail.com>
  */
-public class MonteCarloSimulation extends Thread{
+public class MonteCarloSimulation {
 
     /**
      * Board that will be used for simulation.
@@ -20,9 +21,9 @@ public class MonteCarloSimulation extends Thread{
     private final Board originalBoard;
     
     /**
-     * List of empty fields on the board.
+     * Indices of empty fields on the board.
      */
-    private final Coordinate[] emptyFields;
+    private final int[] emptyFields;
     
     /**
      * This simulation should only take some empty fields into account. Variable
@@ -57,36 +58,35 @@ public class MonteCarloSimulation extends Thread{
     private MCSimulationMove[] possibleMoves;
     
     /**
-     * How many moves have been played so far.
+     * How playouts are played out.
      */
-    private final int movesPlayed;
-    
+    private final PlayoutMode playoutMode;
+
     /**
-     * Who is the player, number 1 or 2.
+     * Number of fields marked in all playouts of this simulation.
      */
-    private final byte player;
+    private long fieldsPlayed;
 
     /**
-     * Initializes a new Monte Carlo simulation.
+     * Initializes a new Monte Carlo simulation. The player is the one on the
+     * move on the original board.
      * 
      * @param b Copy of the board that this simulation is going to work with
      * @param originalBoard Original board
-     * @param emptyFields Coordinates of all of the empty fields
+     * @param emptyFields Indices of all of the empty fields
      * @param from Start of the subset of empty fields
      * @param to End of the subset of empty fields
      * @param repetitions Number of repetitions
-     * @param movesPlayed How many moves have been played so far
-     * @param player For which player is simulation being run
+     * @param playoutMode How playouts are played out
      */
     public MonteCarloSimulation(
             Board b,
             Board originalBoard,
-            Coordinate[] emptyFields, 
+            int[] emptyFields, 
             int from, 
             int to, 
             int repetitions,
-            int movesPlayed,
-            byte player) {
+            PlayoutMode playoutMode) {
         
         this.boardCopy = b;
         this.originalBoard = originalBoard;
@@ -96,55 +96,37 @@ public class MonteCarloSimulation extends Thread{
         this.repetitions = repetitions;
         this.bestResult = -1;
         this.bestField = null;
-        this.movesPlayed = movesPlayed;
-        this.player = player;
+        this.playoutMode = playoutMode;
         this.possibleMoves = new MCSimulationMove[to - from];
     }
 
-    @Override
+    /**
+     * Plays the playouts of all of the fields in the subset.
+     */
     public void run() {
+        Playout playout = Playout.create(
+                playoutMode, originalBoard, boardCopy, emptyFields);
+        
         //for each of the empty fields on the board that was assigned to 
-        //this thread
+        //this simulation
         for (int field = from; field < to; field++) {
 
-            int thisFieldWinSum = 0;
-            
             //mark current "empty" field as this player's and then run the
             //simulation on the rest of the empty fields
-            boardCopy.matrix[emptyFields[field].row][emptyFields[field].col] = 
-                    (byte) (player + 1);
-            
-            //make repetitions
-            for (int repetition = 0; repetition < repetitions; repetition++) {
-                
-                //get random sequence
-                byte[] sequence = PlayerMonteCarlo.getRandomSequence(
-                        movesPlayed, 
-                        boardCopy.size * boardCopy.size);
-                
-                //overlay the random sequence on top of the boardCopy
-                for (int iCount = 0; iCount < sequence.length; iCount++) {
-                    Coordinate c = emptyFields[iCount];
-                    if (iCount != field && !originalBoard.isFieldMarked(c)) {
-                        boardCopy.matrix[c.row][c.col] = sequence[iCount];
-                    }
-                }
-                
-                //check if this player won
-                if (PlayerMonteCarlo.didIWin(boardCopy, player)) {
-                    thisFieldWinSum++;
-                }
-            }
+            int thisFieldWinSum = playout.run(field, repetitions);
             
-            this.possibleMoves[field - from] = new MCSimulationMove(emptyFields[field],
-                1.0 * thisFieldWinSum);
+            Coordinate c = originalBoard.intToCoordinate(emptyFields[field]);
+            this.possibleMoves[field - from] = new MCSimulationMove(c,
+                1.0 * thisFieldWinSum, repetitions);
         
             //if this field is the best so far
             if (thisFieldWinSum > bestResult) {
                 bestResult = thisFieldWinSum;
-                bestField = emptyFields[field];
+                bestField = c;
             }
         }
+        
+        fieldsPlayed = playout.getFieldsPlayed();
     }
     
     /**
@@ -165,6 +147,16 @@ public class MonteCarloSimulation extends Thread{
         return bestResult;
     }
     
+    /**
+     * Get the number of fields marked in all playouts, used to measure how
+     * much early termination saves.
+     * 
+     * @return Number of fields marked
+     */
+    public long getFieldsPlayed() {
+        return fieldsPlayed;
+    }
+    
     public MCSimulationMove[] getAllMoves(){
         return this.possibleMoves;
     }
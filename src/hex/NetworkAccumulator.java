@@ -0,0 +1,163 @@
+package hex;
+
+import java.util.Arrays;
+
+/**
+ * Weighted sums of the first layer of a <tt>DenseNetwork</tt> for a board,
+ * kept up to date mark by mark. A mark changes one input, so it changes the
+ * sums by one row of weights, instead of all inputs times all weights.
+ * <p>
+ * The sums are kept from the first player's side, his marks are 1 and the
+ * second player's -1. The second player's input is the negation, so the same
+ * sums serve both players.
+ * <p>
+ * Not thread safe.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class NetworkAccumulator {
+
+    private final DenseNetwork nn;
+
+    /**
+     * Sum over fields of the first player's input times the field's weights,
+     * without biases.
+     */
+    private final double[] sums;
+
+    /**
+     * Marks the sums are made of, in the layout of the board.
+     */
+    private long[] vertical;
+    private long[] horizontal;
+
+    /**
+     * Size of the board the sums are made of, 0 if there is none.
+     */
+    private int size;
+
+    /**
+     * @param nn Network whose inputs are the fields of a board
+     */
+    public NetworkAccumulator(DenseNetwork nn) {
+        this.nn = nn;
+        this.sums = new double[nn.sizes[1]];
+    }
+
+    /**
+     * Sets the sums to the ones of an empty board of the given size.
+     *
+     * @param size Size of the board, size * size is the number of inputs
+     */
+    public void clear(int size) {
+        if (size * size != nn.getInputs()) {
+            throw new IllegalArgumentException("Network has " + nn.getInputs()
+                    + " inputs, board has " + size * size + " fields.");
+        }
+        int words = (size * size + 63) / 64;
+        this.size = size;
+        this.vertical = new long[words];
+        this.horizontal = new long[words];
+        Arrays.fill(sums, 0.0);
+    }
+
+    /**
+     * Adds a mark.
+     *
+     * @param i Index of the field
+     * @param mark 1 or 2
+     */
+    public void putMark(int i, byte mark) {
+        long bit = 1L << i;
+        if (mark == 1) {
+            vertical[i >>> 6] |= bit;
+        } else {
+            horizontal[i >>> 6] |= bit;
+        }
+        add(i, mark == 1 ? 1.0 : -1.0);
+    }
+
+    /**
+     * Removes a mark.
+     *
+     * @param i Index of the field
+     * @param mark 1 or 2, the mark that is on the field
+     */
+    public void removeMark(int i, byte mark) {
+        long bit = ~(1L << i);
+        if (mark == 1) {
+            vertical[i >>> 6] &= bit;
+        } else {
+            horizontal[i >>> 6] &= bit;
+        }
+        add(i, mark == 1 ? -1.0 : 1.0);
+    }
+
+    /**
+     * Brings the sums to the marks of a board. Only the fields that differ
+     * from the last board are updated, so following a game costs a row of
+     * weights per move.
+     *
+     * @param b Board
+     */
+    public void update(Board b) {
+        if (b.size != size) {
+            clear(b.size);
+        }
+        for (int w = 0; w < vertical.length; w++) {
+            long changed = (vertical[w] ^ b.vertical[w])
+                    | (horizontal[w] ^ b.horizontal[w]);
+            for (; changed != 0; changed &= changed - 1) {
+                int i = w * 64 + Long.numberOfTrailingZeros(changed);
+                byte before = mark(vertical, horizontal, i);
+                byte after = mark(b.vertical, b.horizontal, i);
+                if (before != 0) {
+                    removeMark(i, before);
+                }
+                if (after != 0) {
+                    putMark(i, after);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates putting the mark of a player on each of the candidates, which
+     * must be empty.
+     *
+     * @param player 0 or 1, the player on the move
+     * @param candidates Indices of empty fields
+     * @param count Number of candidates
+     * @param out First output of each candidate, count long
+     */
+    public void scoreMoves(byte player, int[] candidates, int count,
+            double[] out) {
+        double sign = player == 0 ? 1.0 : -1.0;
+        double[] bias = nn.biases[0];
+        double[] first = new double[sums.length];
+        for (int j = 0; j < first.length; j++) {
+            first[j] = bias[j] + sign * sums[j];
+        }
+        nn.scoreMoves(first, null, candidates, count, out);
+    }
+
+    /**
+     * Adds the weights of a field times x to the sums.
+     */
+    private void add(int i, double x) {
+        double[] w = nn.weights[0];
+        int m = sums.length;
+        int col = i * m;
+        for (int j = 0; j < m; j++) {
+            sums[j] += x * w[col + j];
+        }
+    }
+
+    private static byte mark(long[] vertical, long[] horizontal, int i) {
+        long bit = 1L << i;
+        if ((vertical[i >>> 6] & bit) != 0) {
+            return 1;
+        }
+        return (byte) ((horizontal[i >>> 6] & bit) != 0 ? 2 : 0);
+    }
+}
@@ -0,0 +1,200 @@
+package hex;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary file of a <tt>DenseNetwork</tt>. Loading it maps the file
+ * to memory and copies each weight block with one bulk read, without the
+ * Java serialization and the object per neuron and connection of a Neuroph
+ * .nnet file, or loading Neuroph at all.
+ * <p>
+ * The file is little endian:
+ * <pre>
+ * int     magic, "HXNN"
+ * int     version, 1
+ * int     number of layers L, inputs included
+ * int[L]  number of neurons in each layer
+ * int     padding to 8 bytes if L is even
+ * for each of the L - 1 layers after the input layer:
+ *   int     activation, DenseNetwork.Activation ordinal
+ *   int     padding
+ *   double  slope of the activation
+ * for each of the L - 1 layers after the input layer:
+ *   double[inputs * outputs]  weights, input by input
+ *   double[outputs]           biases
+ * </pre>
+ * To convert .nnet files, run:
+ * <pre>
+ * java -cp build/classes:lib/* hex.NetworkFile network.nnet...
+ * </pre>
+ * which writes network.bin next to each of them.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class NetworkFile {
+
+    /**
+     * First four bytes of the file, "HXNN" in ASCII.
+     */
+    static final int MAGIC = 0x4e4e5848;
+
+    static final int VERSION = 1;
+
+    private NetworkFile() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String file : args) {
+            String out = file.replaceAll("\\.nnet$", "") + ".bin";
+            DenseNetwork nn = DenseNetwork.load(file);
+            write(nn, out);
+            System.out.printf("%s -> %s, %d -> %d bytes%n", file, out,
+                    Files.size(Paths.get(file)), Files.size(Paths.get(out)));
+        }
+    }
+
+    /**
+     * Checks if a file is a network file, by its first four bytes.
+     *
+     * @param file File
+     * @return true for a network file, false for other or missing files
+     */
+    public static boolean isNetworkFile(String file) {
+        try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+            return f.length() >= 4 && Integer.reverseBytes(f.readInt()) == MAGIC;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a network.
+     *
+     * @param nn Network
+     * @param file File
+     * @throws IOException
+     */
+    public static void write(DenseNetwork nn, String file) throws IOException {
+        int layers = nn.sizes.length;
+        int bytes = headerBytes(layers);
+        for (int l = 0; l + 1 < layers; l++) {
+            bytes += (nn.weights[l].length + nn.biases[l].length) * 8;
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(layers);
+        for (int size : nn.sizes) {
+            b.putInt(size);
+        }
+        if (layers % 2 == 0) {
+            b.putInt(0);
+        }
+        for (int l = 0; l + 1 < layers; l++) {
+            b.putInt(nn.activations[l].ordinal()).putInt(0).putDouble(nn.slopes[l]);
+        }
+        for (int l = 0; l + 1 < layers; l++) {
+            b.asDoubleBuffer().put(nn.weights[l]).put(nn.biases[l]);
+            b.position(b.position()
+                    + (nn.weights[l].length + nn.biases[l].length) * 8);
+        }
+
+        b.flip();
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+        }
+    }
+
+    /**
+     * Reads a network.
+     *
+     * @param file File
+     * @return Network
+     * @throws UncheckedIOException if the file can't be read
+     * @throws IllegalArgumentException if it isn't a network file
+     */
+    public static DenseNetwork read(String file) {
+        MappedByteBuffer b;
+        try (FileChannel channel = FileChannel.open(Paths.get(file))) {
+            b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        b.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (b.remaining() < 12 || b.getInt() != MAGIC) {
+            throw new IllegalArgumentException(file + " isn't a network file.");
+        }
+        int version = b.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(
+                    file + " has unknown version " + version);
+        }
+        int layers = b.getInt();
+        if (layers < 2 || layers > b.capacity() / 4
+                || b.capacity() < headerBytes(layers)) {
+            throw new IllegalArgumentException(file + " is truncated.");
+        }
+        int[] sizes = new int[layers];
+        long bytes = headerBytes(layers);
+        for (int l = 0; l < layers; l++) {
+            sizes[l] = b.getInt();
+            if (l > 0) {
+                bytes += ((long) sizes[l - 1] * sizes[l] + sizes[l]) * 8;
+            }
+        }
+        if (b.capacity() != bytes) {
+            throw new IllegalArgumentException(file + " has the wrong size.");
+        }
+        if (layers % 2 == 0) {
+            b.getInt();
+        }
+
+        DenseNetwork.Activation[] activations =
+                new DenseNetwork.Activation[layers - 1];
+        double[] slopes = new double[layers - 1];
+        for (int l = 0; l + 1 < layers; l++) {
+            int activation = b.getInt();
+            if (activation < 0
+                    || activation >= DenseNetwork.Activation.values().length) {
+                throw new IllegalArgumentException(
+                        file + " has unknown activation " + activation);
+            }
+            activations[l] = DenseNetwork.Activation.values()[activation];
+            b.getInt();
+            slopes[l] = b.getDouble();
+        }
+
+        double[][] weights = new double[layers - 1][];
+        double[][] biases = new double[layers - 1][];
+        DoubleBuffer blocks = b.asDoubleBuffer();
+        for (int l = 0; l + 1 < layers; l++) {
+            weights[l] = new double[sizes[l] * sizes[l + 1]];
+            biases[l] = new double[sizes[l + 1]];
+            blocks.get(weights[l]).get(biases[l]);
+        }
+
+        return new DenseNetwork(sizes, weights, biases, activations, slopes);
+    }
+
+    /**
+     * Size of everything before the weights, a multiple of 8.
+     */
+    private static int headerBytes(int layers) {
+        int ints = 3 + layers + (layers % 2 == 0 ? 1 : 0);
+        return ints * 4 + (layers - 1) * 16;
+    }
+}
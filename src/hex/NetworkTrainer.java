@@ -0,0 +1,395 @@
+package hex;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.encog.engine.data.BasicEngineData;
+import org.encog.engine.data.BasicEngineDataSet;
+import org.encog.engine.data.EngineData;
+import org.encog.engine.data.EngineIndexableSet;
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.engine.network.flat.FlatLayer;
+import org.encog.engine.network.flat.FlatNetwork;
+import org.encog.engine.network.train.prop.TrainFlatNetworkBackPropagation;
+
+/**
+ * Trains sigmoid multilayer perceptrons with backpropagation on Encog's flat
+ * network, which keeps all weights and activations in flat arrays and
+ * computes the gradients of a batch with one thread per core.
+ * <p>
+ * Examples are shuffled every epoch and split into mini-batches, the weights
+ * are updated after each mini-batch. One trainer is used for the whole
+ * training, it sees the mini-batches through a window that moves over the
+ * examples, and the last mini-batch of an epoch wraps around to the first
+ * examples so that all of them have the same size. After each epoch the
+ * network's error is measured on a validation set, and training stops when
+ * it hasn't improved for a number of epochs. The network with the lowest
+ * validation error is returned, as a <tt>DenseNetwork</tt> that can be saved
+ * as a .nnet file for <tt>PlayerNeuralNetwork</tt>. Run with:
+ * <pre>
+ * java -cp build/classes:lib/* hex.NetworkTrainer [training set] [validation set] [network file] [hidden neurons]
+ * </pre>
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class NetworkTrainer {
+
+    /**
+     * Default number of examples in a mini-batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Learning rate per example, gradients of a mini-batch are summed.
+     */
+    private double learningRate = 0.01;
+
+    private double momentum = 0.5;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Threads computing gradients, 0 for one per core.
+     */
+    private int threads = 0;
+
+    private int maxEpochs = 1000;
+
+    /**
+     * Epochs without improvement on the validation set before stopping.
+     */
+    private int patience = 20;
+
+    private long seed = 1;
+
+    /**
+     * Where the error of each epoch is written, null for nowhere.
+     */
+    private PrintStream log;
+
+    /**
+     * Results of the last training.
+     */
+    private int epochs;
+    private double bestError;
+
+    public static void main(String[] args) throws IOException {
+        String trainingFile = args.length > 0 ? args[0] : "TrainingSet";
+        String validationFile = args.length > 1 ? args[1] : "TestSet";
+        String file = args.length > 2 ? args[2] : "trained.nnet";
+        int hidden = args.length > 3 ? Integer.parseInt(args[3]) : 25;
+
+        List<EngineData> training = read(trainingFile, 49, 1);
+        List<EngineData> validation = read(validationFile, 49, 1);
+        NetworkTrainer trainer = new NetworkTrainer();
+        trainer.setLog(System.out);
+        long start = System.nanoTime();
+        DenseNetwork nn = trainer.train(new int[]{49, hidden, 1},
+                training, validation);
+        System.out.printf("%d epochs, best validation error %.6f, %.1fs%n",
+                trainer.getEpochs(), trainer.getBestError(),
+                (System.nanoTime() - start) / 1e9);
+        nn.save(file);
+
+        //Encog's worker threads would keep the JVM alive for a while
+        System.exit(0);
+    }
+
+    /**
+     * Reads examples from a file with a line per example, the inputs and then
+     * the expected outputs, separated by spaces.
+     *
+     * @param file File
+     * @param inputs Number of inputs
+     * @param outputs Number of outputs
+     * @return Examples
+     * @throws IOException
+     */
+    public static List<EngineData> read(String file, int inputs, int outputs)
+            throws IOException {
+        List<EngineData> examples = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] values = line.trim().split("\\s+");
+                if (values.length < inputs + outputs) {
+                    continue;
+                }
+                double[] input = new double[inputs];
+                double[] ideal = new double[outputs];
+                for (int i = 0; i < inputs; i++) {
+                    input[i] = Double.parseDouble(values[i]);
+                }
+                for (int i = 0; i < outputs; i++) {
+                    ideal[i] = Double.parseDouble(values[inputs + i]);
+                }
+                examples.add(new BasicEngineData(input, ideal));
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * Trains a network.
+     *
+     * @param sizes Number of neurons in each layer, inputs first
+     * @param training Training examples, they are shuffled
+     * @param validation Validation examples
+     * @return Network with the lowest error on the validation examples
+     */
+    public DenseNetwork train(int[] sizes, List<EngineData> training,
+            List<EngineData> validation) {
+        FlatNetwork network = createNetwork(sizes);
+        Random random = new Random(seed);
+        double[] weights = network.getWeights();
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = random.nextDouble() - 0.5;
+        }
+
+        BasicEngineDataSet validationSet = new BasicEngineDataSet(validation);
+        double[] best = weights.clone();
+        bestError = network.calculateError(validationSet);
+        int sinceBest = 0;
+
+        //Encog splits a batch between its threads on the first iteration, so
+        //the window keeps the same size for the whole training
+        BatchWindow window = new BatchWindow(training,
+                Math.min(batchSize, training.size()));
+        TrainFlatNetworkBackPropagation trainer =
+                new TrainFlatNetworkBackPropagation(network, window,
+                        learningRate, momentum);
+        trainer.setNumThreads(threads);
+
+        for (epochs = 1; epochs <= maxEpochs && sinceBest < patience;
+                epochs++) {
+            Collections.shuffle(training, random);
+            for (int from = 0; from < training.size(); from += window.size) {
+                window.from = from;
+                trainer.iteration();
+            }
+
+            double error = network.calculateError(validationSet);
+            if (error < bestError) {
+                bestError = error;
+                best = network.getWeights().clone();
+                sinceBest = 0;
+            } else {
+                sinceBest++;
+            }
+            if (log != null) {
+                log.printf("epoch %d validation error %.6f%n", epochs, error);
+            }
+        }
+        epochs--;
+
+        System.arraycopy(best, 0, network.getWeights(), 0, best.length);
+        return toDenseNetwork(network);
+    }
+
+    /**
+     * Mini-batch of the training examples, the examples from index from on,
+     * wrapping around at the end. Encog's workers read it through
+     * openAdditional, they all share the window.
+     */
+    private static class BatchWindow implements EngineIndexableSet {
+
+        private final List<EngineData> examples;
+        private final int size;
+        private int from;
+
+        BatchWindow(List<EngineData> examples, int size) {
+            this.examples = examples;
+            this.size = size;
+        }
+
+        @Override
+        public long getRecordCount() {
+            return size;
+        }
+
+        @Override
+        public void getRecord(long index, EngineData pair) {
+            EngineData example = examples.get(
+                    (int) ((from + index) % examples.size()));
+            pair.setInputArray(example.getInputArray());
+            if (pair.getIdealArray() != null) {
+                pair.setIdealArray(example.getIdealArray());
+            }
+        }
+
+        @Override
+        public EngineIndexableSet openAdditional() {
+            return this;
+        }
+
+        @Override
+        public int getIdealSize() {
+            return examples.get(0).getIdealArray().length;
+        }
+
+        @Override
+        public int getInputSize() {
+            return examples.get(0).getInputArray().length;
+        }
+
+        @Override
+        public boolean isSupervised() {
+            return true;
+        }
+    }
+
+    /**
+     * Makes a flat network with sigmoid neurons and a bias in each layer
+     * except the output layer.
+     */
+    static FlatNetwork createNetwork(int[] sizes) {
+        FlatLayer[] layers = new FlatLayer[sizes.length];
+        for (int l = 0; l < sizes.length; l++) {
+            boolean last = l + 1 == sizes.length;
+            layers[l] = new FlatLayer(new ActivationSigmoid(), sizes[l],
+                    last ? FlatNetwork.NO_BIAS_ACTIVATION
+                            : FlatNetwork.DEFAULT_BIAS_ACTIVATION,
+                    null);
+        }
+        return new FlatNetwork(layers);
+    }
+
+    /**
+     * Copies the weights of a flat network made by createNetwork. Encog keeps
+     * the layers output layer first, and the weights of each neuron next to
+     * each other, the bias last.
+     */
+    static DenseNetwork toDenseNetwork(FlatNetwork network) {
+        int[] counts = network.getLayerCounts();
+        int[] feeds = network.getLayerFeedCounts();
+        int[] index = network.getWeightIndex();
+        double[] flat = network.getWeights();
+        ActivationFunction[] functions = network.getActivationFunctions();
+        int layers = counts.length;
+
+        int[] sizes = new int[layers];
+        for (int l = 0; l < layers; l++) {
+            sizes[l] = feeds[layers - 1 - l];
+        }
+        double[][] weights = new double[layers - 1][];
+        double[][] biases = new double[layers - 1][];
+        DenseNetwork.Activation[] activations =
+                new DenseNetwork.Activation[layers - 1];
+        double[] slopes = new double[layers - 1];
+
+        for (int l = 0; l + 1 < layers; l++) {
+            //layer l of the dense network feeds layer k of the flat one
+            int k = layers - 2 - l;
+            int n = sizes[l];
+            int m = sizes[l + 1];
+            weights[l] = new double[n * m];
+            biases[l] = new double[m];
+            int w = index[k];
+            for (int j = 0; j < m; j++) {
+                for (int i = 0; i < counts[k + 1]; i++) {
+                    if (i < n) {
+                        weights[l][i * m + j] = flat[w++];
+                    } else {
+                        biases[l][j] += flat[w++]
+                                * FlatNetwork.DEFAULT_BIAS_ACTIVATION;
+                    }
+                }
+            }
+            if (!(functions[k] instanceof ActivationSigmoid)) {
+                throw new IllegalArgumentException(
+                        "Only sigmoid networks are copied.");
+            }
+            //Encog's sigmoid is 1 / (1 + e^(-2x))
+            activations[l] = DenseNetwork.Activation.SIGMOID;
+            slopes[l] = 2.0;
+        }
+
+        return new DenseNetwork(sizes, weights, biases, activations, slopes);
+    }
+
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public void setMomentum(double momentum) {
+        this.momentum = momentum;
+    }
+
+    public double getMomentum() {
+        return momentum;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param threads Threads computing gradients, 0 for one per core
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setMaxEpochs(int maxEpochs) {
+        this.maxEpochs = maxEpochs;
+    }
+
+    public int getMaxEpochs() {
+        return maxEpochs;
+    }
+
+    /**
+     * @param patience Epochs without improvement on the validation set
+     * before stopping
+     */
+    public void setPatience(int patience) {
+        this.patience = patience;
+    }
+
+    public int getPatience() {
+        return patience;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * @return Number of epochs of the last training
+     */
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * @return Lowest validation error (mean squared) of the last training
+     */
+    public double getBestError() {
+        return bestError;
+    }
+}
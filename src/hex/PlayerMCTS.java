@@ -0,0 +1,367 @@
+package hex;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class <tt>PlayerMCTS</tt> implements Player interface with UCT Monte Carlo
+ * tree search. Unlike <tt>PlayerMonteCarlo</tt>, which only looks one move
+ * ahead, it grows a tree of positions: each playout descends the tree with
+ * UCB1, expands one new node, fills the rest of the board randomly and backs
+ * the result up the path.
+ * <p>
+ * With more than one thread, all threads search the same tree at the same
+ * time. Nodes are updated without locks and threads below a node count as
+ * its lost playouts (virtual loss), so they spread over different lines.
+ * <p>
+ * The tree is kept between moves. When asked for the next move, the player
+ * looks for the current position among the children and grandchildren of the
+ * last root (its own move and the opponent's reply) and continues from that
+ * subtree, so the playouts that went through it are not lost. While the
+ * opponent thinks, the player can keep searching from the position after its
+ * own move (pondering), and whatever was found under the opponent's actual
+ * reply is kept the same way.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class PlayerMCTS implements PonderingPlayer {
+
+    /**
+     * Default exploration constant of UCB1.
+     */
+    public static final double DEFAULT_EXPLORATION = 0.5;
+
+    /**
+     * How many playouts are played for each move.
+     */
+    private final int playouts;
+
+    /**
+     * Exploration constant of UCB1, higher values try more of the less
+     * promising moves.
+     */
+    private final double exploration;
+
+    /**
+     * Search threads, one worker each.
+     */
+    private final MCTSWorker[] workers;
+
+    /**
+     * Shared pool that runs the workers, null if there is only one.
+     */
+    private final PlayoutPool pool;
+
+    /**
+     * Limits of a move, null if playouts playouts are played.
+     */
+    private SearchBudget budget;
+
+    /**
+     * Should the subtree of the position be kept between moves.
+     */
+    private boolean reuseTree;
+
+    /**
+     * Root of the tree, the position after this player's last move.
+     */
+    private MCTSNode root;
+
+    /**
+     * Number of playouts found in the reused subtree at the start of the
+     * last search.
+     */
+    private int reusedPlayouts;
+
+    /**
+     * Number of playouts played in the last search.
+     */
+    private long lastPlayouts;
+
+    /**
+     * Largest number of playouts of one pondering, as many as a move by
+     * default, which keeps the tree from growing without bounds while the
+     * opponent thinks for long.
+     */
+    private long ponderPlayouts;
+
+    /**
+     * Threads that ponder, null if the player isn't pondering.
+     */
+    private Thread[] ponderThreads;
+
+    /**
+     * Playouts left for pondering, set to 0 to stop it.
+     */
+    private AtomicLong ponderRemaining;
+
+    /**
+     * Initializes a new single threaded PlayerMCTS with the default
+     * exploration constant.
+     *
+     * @param playouts How many playouts to play for each move
+     */
+    public PlayerMCTS(int playouts) {
+        this(playouts, DEFAULT_EXPLORATION);
+    }
+
+    /**
+     * Initializes a new single threaded PlayerMCTS.
+     *
+     * @param playouts How many playouts to play for each move
+     * @param exploration Exploration constant of UCB1
+     */
+    public PlayerMCTS(int playouts, double exploration) {
+        this(playouts, exploration, 1);
+    }
+
+    /**
+     * Initializes a new PlayerMCTS.
+     *
+     * @param playouts How many playouts to play for each move
+     * @param exploration Exploration constant of UCB1
+     * @param threads How many threads search the tree
+     */
+    public PlayerMCTS(int playouts, double exploration, int threads) {
+        if (playouts < 1) {
+            throw new IllegalArgumentException(
+                    "Number of playouts must be positive.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive.");
+        }
+        this.playouts = playouts;
+        this.exploration = exploration;
+        this.reuseTree = true;
+        this.ponderPlayouts = playouts;
+        this.pool = threads > 1 ? PlayoutPool.shared(threads) : null;
+        this.workers = new MCTSWorker[threads];
+        for (int iCount = 0; iCount < threads; iCount++) {
+            workers[iCount] = new MCTSWorker(
+                    ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    public int getNumberOfPlayouts() {
+        return playouts;
+    }
+
+    public int getNumberOfThreads() {
+        return workers.length;
+    }
+
+    public boolean isTreeReused() {
+        return reuseTree;
+    }
+
+    /**
+     * Sets if the subtree of the current position should be kept between
+     * moves. Turning it off also drops the current tree.
+     *
+     * @param reuseTree true to keep the tree
+     */
+    public synchronized void setTreeReuse(boolean reuseTree) {
+        stopPondering();
+        this.reuseTree = reuseTree;
+        if (!reuseTree) {
+            root = null;
+        }
+    }
+
+    public SearchBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the limits of a move. A playout limit of the budget replaces the
+     * number of playouts the player was created with.
+     *
+     * @param budget Limits of a move, null to play the number of playouts
+     * the player was created with
+     */
+    public void setBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Makes the search reproducible. With more than one thread the order in
+     * which threads update the tree still varies between runs.
+     *
+     * @param seed Seed
+     */
+    public void setSeed(long seed) {
+        for (int iCount = 0; iCount < workers.length; iCount++) {
+            workers[iCount].random.setSeed(PlayoutRandom.seed(seed, iCount));
+        }
+    }
+
+    /**
+     * Returns how many playouts were already in the tree when the last search
+     * started, thanks to the reused subtree.
+     *
+     * @return Number of reused playouts
+     */
+    public int getReusedPlayouts() {
+        return reusedPlayouts;
+    }
+
+    /**
+     * Returns how many playouts were played by all threads in the last
+     * search.
+     *
+     * @return Number of playouts
+     */
+    public long getPlayoutsOfLastMove() {
+        return lastPlayouts;
+    }
+
+    /**
+     * Sets the largest number of playouts of one pondering, by default the
+     * number of playouts of a move.
+     *
+     * @param ponderPlayouts Playouts, 0 turns pondering off
+     */
+    public void setPonderPlayouts(long ponderPlayouts) {
+        this.ponderPlayouts = ponderPlayouts;
+    }
+
+    /**
+     * Starts searching from the position in background threads, one per
+     * search thread of the player. Pondering only makes sense with tree
+     * reuse, so it does nothing if reuse is turned off.
+     *
+     * @param b Board with the opponent on the move
+     */
+    @Override
+    public synchronized void startPondering(Board b) {
+        stopPondering();
+        if (!reuseTree || ponderPlayouts <= 0 || b.getNoOfEmptyFields() == 0) {
+            return;
+        }
+
+        //the board may change once this returns, workers copy it now
+        root = findRoot(b);
+        for (MCTSWorker worker : workers) {
+            worker.reset(b);
+        }
+
+        //visits are ints, they must not overflow however long it ponders
+        MCTSNode ponderRoot = root;
+        AtomicLong remaining = new AtomicLong(Math.min(ponderPlayouts,
+                Integer.MAX_VALUE - (long) ponderRoot.getVisits()));
+        ponderRemaining = remaining;
+        ponderThreads = new Thread[workers.length];
+        for (int iCount = 0; iCount < workers.length; iCount++) {
+            MCTSWorker worker = workers[iCount];
+            ponderThreads[iCount] = new Thread(() -> worker.search(ponderRoot,
+                    exploration, remaining, PlayoutPool.NO_DEADLINE),
+                    "PlayerMCTS-ponder-" + iCount);
+            ponderThreads[iCount].setDaemon(true);
+            ponderThreads[iCount].start();
+        }
+    }
+
+    @Override
+    public synchronized void stopPondering() {
+        if (ponderThreads == null) {
+            return;
+        }
+        ponderRemaining.set(0);
+        boolean interrupted = false;
+        for (Thread thread : ponderThreads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        ponderThreads = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the pondering has played all of its playouts.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitPondering() throws InterruptedException {
+        Thread[] threads;
+        synchronized (this) {
+            threads = ponderThreads;
+        }
+        if (threads != null) {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    @Override
+    public synchronized Coordinate makeMove(Board b) {
+        if (b.getNoOfEmptyFields() == 0) {
+            throw new IllegalArgumentException("There are no empty fields.");
+        }
+        stopPondering();
+        long start = System.nanoTime();
+
+        root = findRoot(b);
+        reusedPlayouts = root.getVisits();
+
+        SearchBudget moveBudget = budget != null
+                ? budget : SearchBudget.ofPlayouts(playouts);
+        long deadline = moveBudget.deadline(start);
+        AtomicLong remaining = new AtomicLong(moveBudget.hasPlayoutLimit()
+                ? moveBudget.getPlayouts() : Long.MAX_VALUE);
+
+        for (MCTSWorker worker : workers) {
+            worker.reset(b);
+        }
+        MCTSNode searchRoot = root;
+        if (pool == null) {
+            workers[0].search(searchRoot, exploration, remaining, deadline);
+        } else {
+            pool.run(workers.length, unit -> workers[unit].search(
+                    searchRoot, exploration, remaining, deadline));
+        }
+
+        //even a budget that ran out at once needs a move
+        while (root.mostVisitedChild() == null) {
+            workers[0].playout(root, exploration);
+        }
+        lastPlayouts = root.getVisits() - reusedPlayouts;
+
+        MCTSNode best = root.mostVisitedChild();
+
+        //keep only the subtree of the move that is played
+        root = reuseTree ? best : null;
+        return b.intToCoordinate(best.move);
+    }
+
+    /**
+     * Finds the node of the position in the tree left from the last move, or
+     * makes a new root if it's not there.
+     *
+     * @param b Board with the current position
+     * @return Root of the search
+     */
+    private MCTSNode findRoot(Board b) {
+        long hash = b.getHash();
+        if (root != null) {
+            if (root.hash == hash) {
+                return root;
+            }
+
+            //the opponent's reply is a child of this player's last move
+            MCTSNode found = root.find(hash, 2);
+            if (found != null) {
+                return found;
+            }
+        }
+        return new MCTSNode(-1, b, false);
+    }
+}
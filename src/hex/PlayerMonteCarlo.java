@@ -3,8 +3,7 @@ package hex;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  *
@@ -17,16 +16,91 @@ public class PlayerMonteCarlo implements Player {
      */
     private final int repetitions;
     
+    /**
+     * Candidates aren't dropped by RACING before they have this many
+     * playouts.
+     */
+    static final int RACING_MIN_PLAYOUTS = 128;
+    
+    /**
+     * Width of RACING confidence intervals in standard deviations.
+     */
+    static final double RACING_Z = 3.0;
+    
     /**
      * How many threads should be used when doing the simulation.
      */
     private final int threads;
     
+    /**
+     * Shared pool of worker threads that runs the simulation.
+     */
+    private final PlayoutPool pool;
+    
     /**
      * if there are two or more results with best result, should return first one
      * or randomly chosen
      */
     private final boolean randomizeBest;
+    
+    /**
+     * How playouts are played out.
+     */
+    private PlayoutMode playoutMode;
+    
+    /**
+     * How the candidate moves are evaluated.
+     */
+    private EvaluationMode evaluationMode;
+    
+    /**
+     * How per candidate playouts are spread over the candidates.
+     */
+    private AllocationStrategy allocation;
+    
+    /**
+     * Number of shared fills per move, used by SHARED_FILLS and BLENDED.
+     */
+    private int sharedFills;
+    
+    /**
+     * Weight of shared fills estimates in BLENDED mode, between 0 and 1.
+     */
+    private double sharedFillsWeight;
+    
+    /**
+     * Limits of a move, null if repetitions playouts are played per field.
+     */
+    private SearchBudget budget;
+    
+    /**
+     * Hands out budgets of moves from the game clock, null if there's no
+     * clock. Takes precedence over budget.
+     */
+    private TimeManager timeManager;
+    
+    /**
+     * Evaluations of positions seen before, null if there's no cache.
+     */
+    private EvaluationCache cache;
+    
+    /**
+     * Should only one field of each symmetric pair be evaluated on positions
+     * that are the same rotated by 180 degrees.
+     */
+    private boolean symmetry;
+    
+    /**
+     * Number of playouts and shared fills played for the last move.
+     */
+    private long lastPlayouts;
+    
+    /**
+     * Base seed of playouts, used only if seeded is set.
+     */
+    private long seed;
+    private boolean seeded;
+    
     /**
      * Initializes a new PlayerMonteCarlo.
      * 
@@ -38,13 +112,190 @@ public class PlayerMonteCarlo implements Player {
     public PlayerMonteCarlo(int repetitions, int threads, boolean randomizeBest) {
         this.repetitions = repetitions;
         this.threads = threads;
+        this.pool = PlayoutPool.shared(threads);
         this.randomizeBest = randomizeBest;
+        this.playoutMode = PlayoutMode.FILL;
+        this.evaluationMode = EvaluationMode.PER_CANDIDATE;
+        this.allocation = AllocationStrategy.UNIFORM;
+        this.sharedFills = repetitions;
+        this.sharedFillsWeight = 0.5;
     }
     
     public int getNumberOfRepetitions(){
         return this.repetitions;
     }
     
+    public PlayoutMode getPlayoutMode() {
+        return playoutMode;
+    }
+    
+    /**
+     * Sets how playouts are played out. All modes give the same estimates,
+     * EARLY_TERMINATION stops each playout as soon as one player connects
+     * and BIT_SLICED plays 64 fills at once. Shared fills are always played
+     * as FILL.
+     * 
+     * @param playoutMode How playouts are played out
+     */
+    public void setPlayoutMode(PlayoutMode playoutMode) {
+        this.playoutMode = playoutMode;
+    }
+    
+    public EvaluationMode getEvaluationMode() {
+        return evaluationMode;
+    }
+    
+    /**
+     * Sets how candidate moves are evaluated. SHARED_FILLS estimates are
+     * scaled to the number of repetitions, so results of all modes can be
+     * read the same way (number of wins out of repetitions).
+     * 
+     * @param evaluationMode How candidate moves are evaluated
+     */
+    public void setEvaluationMode(EvaluationMode evaluationMode) {
+        this.evaluationMode = evaluationMode;
+    }
+    
+    public AllocationStrategy getAllocationStrategy() {
+        return allocation;
+    }
+    
+    /**
+     * Sets how per candidate playouts are spread over the candidates. RACING
+     * and SUCCESSIVE_HALVING spend at most as many playouts as UNIFORM, or
+     * the playouts of the budget, and rank candidates that were kept longer
+     * before the ones that were dropped. Per candidate playout counts are
+     * in the visits of the returned moves.
+     * 
+     * @param allocation How playouts are spread over the candidates
+     */
+    public void setAllocationStrategy(AllocationStrategy allocation) {
+        this.allocation = allocation;
+    }
+    
+    /**
+     * Sets how many shared fills are made per move in SHARED_FILLS and
+     * BLENDED modes. Defaults to the number of repetitions.
+     * 
+     * @param sharedFills Number of shared fills per move
+     */
+    public void setSharedFills(int sharedFills) {
+        this.sharedFills = sharedFills;
+    }
+    
+    /**
+     * Sets the weight of shared fills estimates in BLENDED mode, the rest of
+     * the weight goes to per candidate estimates. Defaults to 0.5.
+     * 
+     * @param sharedFillsWeight Weight between 0 and 1
+     */
+    public void setSharedFillsWeight(double sharedFillsWeight) {
+        if (sharedFillsWeight < 0 || sharedFillsWeight > 1) {
+            throw new IllegalArgumentException(
+                    "Weight has to be between 0 and 1.");
+        }
+        this.sharedFillsWeight = sharedFillsWeight;
+    }
+    
+    public SearchBudget getBudget() {
+        return budget;
+    }
+    
+    /**
+     * Sets the limits of a move. With a budget, playouts are played in rounds
+     * over all candidate fields until the time or the number of playouts runs
+     * out, and the estimates so far are returned. They are still scaled to
+     * the number of repetitions. A playout limit is for all candidates
+     * together. In BLENDED mode both phases get their part of the budget by
+     * the shared fills weight.
+     * 
+     * @param budget Limits of a move, null to play repetitions playouts per
+     * field
+     */
+    public void setBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+    
+    /**
+     * Sets the game clock. Each move gets the budget the time manager hands
+     * out and the time the move took is taken off the clock.
+     * 
+     * @param timeManager Time manager, null for no clock
+     */
+    public void setTimeManager(TimeManager timeManager) {
+        this.timeManager = timeManager;
+    }
+    
+    public EvaluationCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Sets the cache of evaluated positions. A position that is in the cache
+     * isn't evaluated again, and every evaluated position is stored with its
+     * number of playouts as the effort. The cache should only be shared with
+     * players that have the same settings.
+     * 
+     * @param cache Cache, null for none
+     */
+    public void setCache(EvaluationCache cache) {
+        this.cache = cache;
+    }
+    
+    public boolean isSymmetryUsed() {
+        return symmetry;
+    }
+    
+    /**
+     * Sets if board symmetry should be used. A position that is the same
+     * rotated by 180 degrees (the empty board, and any board where each mark
+     * has its rotated twin) has pairs of equally good fields, so per 
+     * candidate playouts are played only for one field of each pair, which 
+     * halves the work, or with a budget doubles the playouts of each field. 
+     * The other field of the pair gets the same estimate. Shared fills 
+     * estimates of both fields are pooled. Other positions are evaluated as
+     * usual.
+     * 
+     * @param symmetry true to use symmetry
+     */
+    public void setSymmetry(boolean symmetry) {
+        this.symmetry = symmetry;
+    }
+    
+    /**
+     * Returns how many playouts (and shared fills) were played for the last
+     * move.
+     * 
+     * @return Number of playouts
+     */
+    public long getPlayoutsOfLastMove() {
+        return lastPlayouts;
+    }
+    
+    /**
+     * Makes playouts reproducible. Each batch of playouts is seeded from this
+     * seed, the position and the batch number, so the same position gives the
+     * same estimates no matter how batches are spread over the threads.
+     * 
+     * @param seed Base seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+    
+    /**
+     * Returns the seed for playouts of a move.
+     * 
+     * @param b Board
+     * @return Seed of the move
+     */
+    private long moveSeed(Board b) {
+        return seeded 
+                ? PlayoutRandom.seed(seed, b.getHash()) 
+                : ThreadLocalRandom.current().nextLong();
+    }
+    
     @Override
     public Coordinate makeMove(Board t) {
         return makeMoveWithProbability(t)[0].getCoordinates();
@@ -57,95 +308,383 @@ public class PlayerMonteCarlo implements Player {
      * @return 
      */
     public MCSimulationMove[] makeMoveWithProbability(Board b) {
-        //make a deep copy of the board for each thread
-        Board[] boardCopies = new Board[threads];
-        for (int iCount = 0; iCount < threads; iCount++) {
-            boardCopies[iCount] = b.deepCopy();
+        double weight = evaluationMode == EvaluationMode.PER_CANDIDATE ? 0.0
+                : evaluationMode == EvaluationMode.SHARED_FILLS ? 1.0 
+                : sharedFillsWeight;
+        
+        long start = System.nanoTime();
+        
+        //positions seen before aren't evaluated again, the lookup still
+        //takes its time off the clock
+        if (cache != null) {
+            MCSimulationMove[] cached = cache.get(b);
+            if (cached != null) {
+                lastPlayouts = 0;
+                sortMoves(cached, moveOrder(weight));
+                if (timeManager != null) {
+                    timeManager.moveDone((System.nanoTime() - start) / 1000000);
+                }
+                return cached;
+            }
         }
         
-        //get coordinates of empty fields in the board
-        Coordinate[] emptyFields = b.getEmptyFields();
+        SearchBudget moveBudget = timeManager != null 
+                ? timeManager.budgetFor(b) : budget;
         
-        int noOfEmptyFields = b.noOfEmptyFields;
-        int movesPlayed = b.size * b.size - noOfEmptyFields;
-        byte player = b.whosOnTheMove();
+        //get indices of empty fields in the board
+        int[] emptyFields = b.getEmptyFieldIndices();
         
-        //create simulation threads
-        MonteCarloSimulation[] simArray = new MonteCarloSimulation[threads];
-        int fields = b.noOfEmptyFields / threads;
-        int iCount;
-        for (iCount = 0; iCount < threads - 1; iCount++) {
-            simArray[iCount] = new MonteCarloSimulation(
-                    boardCopies[iCount], 
-                    b,
-                    emptyFields, 
-                    iCount * fields, 
-                    (iCount + 1) * fields , 
-                    repetitions, 
-                    movesPlayed, 
-                    player);
-        }
+        int n = emptyFields.length;
+        long seed = moveSeed(b);
         
-        //last simulation
-        simArray[threads - 1] = new MonteCarloSimulation(
-                boardCopies[threads - 1], 
-                b,
-                emptyFields, 
-                iCount * fields, 
-                noOfEmptyFields, 
-                repetitions, 
-                movesPlayed, 
-                player);
+        //fields of symmetric pairs, only the first of each pair is played
+        int[] mirror = symmetry && b.isSymmetric(BoardSymmetry.ROTATE_180)
+                ? mirrors(b, emptyFields) : null;
+        int[] candidates = candidates(mirror, n);
+        double[] results = new double[n];
+        lastPlayouts = 0;
         
-        //start all threads
-        for (MonteCarloSimulation mcs : simArray) {
-            mcs.start();
+        //run the playouts on the shared pool
+        int[] visits = new int[n];
+        if (weight < 1) {
+            int[] wins = new int[n];
+            int[] played = visits;
+            SearchBudget part = moveBudget == null 
+                    ? null : moveBudget.scale(1 - weight);
+            if (allocation != AllocationStrategy.UNIFORM) {
+                allocate(b, emptyFields, candidates, part, seed, start, 
+                        wins, played);
+            } else if (part == null && mirror == null) {
+                wins = pool.evaluate(b, emptyFields, playoutMode, repetitions,
+                        seed);
+                Arrays.fill(played, repetitions);
+            } else if (part == null) {
+                pool.evaluate(b, emptyFields, candidates, playoutMode, 
+                        repetitions, seed, PlayoutPool.NO_DEADLINE, 
+                        wins, played);
+            } else {
+                pool.evaluate(b, emptyFields, candidates, playoutMode, 
+                        perField(part, candidates.length), seed, 
+                        part.deadline(start), wins, played);
+            }
+            for (int c : candidates) {
+                lastPlayouts += played[c];
+            }
+            if (mirror != null) {
+                for (int iCount = 0; iCount < n; iCount++) {
+                    if (mirror[iCount] < iCount) {
+                        wins[iCount] = wins[mirror[iCount]];
+                        played[iCount] = played[mirror[iCount]];
+                    }
+                }
+            }
+            for (int iCount = 0; iCount < n; iCount++) {
+                results[iCount] = (1 - weight) * scaled(wins[iCount], played[iCount]);
+            }
         }
         
-        //join, so that everything bellow has to wait until they're done
-        for (MonteCarloSimulation mcs : simArray) {
-            try {
-                mcs.join();
-            } catch (InterruptedException ex) {
-                Logger.getLogger(PlayerMonteCarlo.class.getName()).log(Level.SEVERE, null, ex);
+        //credit all fields of each shared fill, scaled to repetitions
+        if (weight > 0) {
+            int[] wins = new int[n];
+            int[] counts = new int[n];
+            int fills = sharedFills;
+            long deadline = PlayoutPool.NO_DEADLINE;
+            if (moveBudget != null) {
+                SearchBudget part = moveBudget.scale(weight);
+                fills = part.hasPlayoutLimit() 
+                        ? (int) Math.min(part.getPlayouts(), Integer.MAX_VALUE)
+                        : Integer.MAX_VALUE;
+                deadline = part.deadline(System.nanoTime());
+            }
+            lastPlayouts += pool.evaluateShared(b, emptyFields, fills, ~seed, 
+                    deadline, wins, counts);
+            if (mirror != null) {
+                for (int iCount = 0; iCount < n; iCount++) {
+                    int m = mirror[iCount];
+                    if (m > iCount) {
+                        wins[iCount] = wins[m] += wins[iCount];
+                        counts[iCount] = counts[m] += counts[iCount];
+                    }
+                }
+            }
+            for (int iCount = 0; iCount < n; iCount++) {
+                results[iCount] += weight * scaled(wins[iCount], counts[iCount]);
+                visits[iCount] += counts[iCount];
             }
         }
         
-        
+        if (timeManager != null) {
+            timeManager.moveDone((System.nanoTime() - start) / 1000000);
+        }
         
         //creating array of all moves
-        MCSimulationMove[] allMoves = new MCSimulationMove[noOfEmptyFields];
+        MCSimulationMove[] allMoves = new MCSimulationMove[n];
+        for (int iCount = 0; iCount < n; iCount++) {
+            allMoves[iCount] = new MCSimulationMove(
+                    b.intToCoordinate(emptyFields[iCount]), results[iCount],
+                    visits[iCount]);
+        }
         
-        int counter = 0;
-        //copying moves from thread - simulation to one array
-        for (int jCount = 0; jCount < threads; jCount++) {
-            MCSimulationMove[] help = simArray[jCount].getAllMoves();
-            for(iCount = 0; iCount < help.length; iCount++){
-                allMoves[counter++] = new MCSimulationMove(help[iCount].getCoordinates(), help[iCount].getProbability());
+        sortMoves(allMoves, moveOrder(weight));
+        if (cache != null) {
+            cache.put(b, allMoves, lastPlayouts);
+        }
+        return allMoves;
+    }
+    
+    /**
+     * Pairs each empty field with its image under the 180 degree rotation.
+     * 
+     * @param b Board that is the same rotated
+     * @param emptyFields Indices of empty fields of the board
+     * @return For each empty field, index in emptyFields of its image
+     */
+    private static int[] mirrors(Board b, int[] emptyFields) {
+        int size = b.getSize();
+        int[] indexOf = new int[size * size];
+        for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+            indexOf[emptyFields[iCount]] = iCount;
+        }
+        int[] mirror = new int[emptyFields.length];
+        for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+            mirror[iCount] = indexOf[
+                    BoardSymmetry.ROTATE_180.apply(emptyFields[iCount], size)];
+        }
+        return mirror;
+    }
+    
+    /**
+     * Returns the candidates that are played, the first field of each
+     * symmetric pair, or all fields if there is no symmetry.
+     * 
+     * @param mirror Images of the fields, null if there is no symmetry
+     * @param n Number of empty fields
+     * @return Indices in emptyFields of the candidates
+     */
+    private static int[] candidates(int[] mirror, int n) {
+        int count = 0;
+        int[] result = new int[n];
+        for (int iCount = 0; iCount < n; iCount++) {
+            if (mirror == null || mirror[iCount] >= iCount) {
+                result[count++] = iCount;
             }
         }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Returns the order of moves, from worst to best. With adaptive 
+     * allocation, candidates that were kept longer come first.
+     * 
+     * @param weight Weight of shared fills estimates
+     * @return Order of moves
+     */
+    private Comparator<MCSimulationMove> moveOrder(double weight) {
+        Comparator<MCSimulationMove> order = Comparator.naturalOrder();
+        if (allocation != AllocationStrategy.UNIFORM && weight < 1) {
+            order = Comparator.comparingInt(MCSimulationMove::getVisits)
+                    .thenComparing(order);
+        }
+        return order;
+    }
+    
+    /**
+     * Spreads per candidate playouts adaptively. Without a budget at most
+     * repetitions playouts are played per candidate, with a budget the
+     * playouts and the time of the budget are spent.
+     * 
+     * @param b Board
+     * @param emptyFields Indices of empty fields of the board
+     * @param candidates Indices in emptyFields of the candidates
+     * @param part Budget of per candidate playouts, null for none
+     * @param seed Seed of the move
+     * @param start System.nanoTime() at the start of the move
+     * @param wins Output, wins for each of the empty fields
+     * @param played Output, playouts for each of the empty fields
+     */
+    private void allocate(Board b, int[] emptyFields, int[] candidates,
+            SearchBudget part, long seed, long start, int[] wins, int[] played) {
+        int n = candidates.length;
+        long total = (long) repetitions * n;
+        int cap = repetitions;
+        long deadline = PlayoutPool.NO_DEADLINE;
+        if (part != null) {
+            total = part.hasPlayoutLimit() ? part.getPlayouts() 
+                    : allocation == AllocationStrategy.RACING 
+                    ? Long.MAX_VALUE : total;
+            cap = Integer.MAX_VALUE;
+            deadline = part.deadline(start);
+        }
         
-        Arrays.sort(allMoves, Comparator.reverseOrder());
+        int[] active = candidates.clone();
+        
+        PlayoutPool.Rounds rounds = pool.start(b, emptyFields, playoutMode, seed);
+        if (allocation == AllocationStrategy.RACING) {
+            race(rounds, active, total, cap, deadline, wins, played);
+        } else {
+            halve(rounds, active, total, deadline, wins, played);
+        }
+    }
+    
+    /**
+     * Plays all active candidates in rounds of one batch and drops the ones
+     * that are clearly worse than the best one, until one is left or the
+     * budget runs out.
+     * 
+     * @param rounds Playouts of the move
+     * @param active Indices of the candidates, reordered in place
+     * @param total Largest number of playouts
+     * @param cap Largest number of playouts per candidate
+     * @param deadline Deadline of the move or PlayoutPool.NO_DEADLINE
+     * @param wins Output, wins for each of the candidates
+     * @param played Output, playouts for each of the candidates
+     */
+    private void race(PlayoutPool.Rounds rounds, int[] active, long total, 
+            int cap, long deadline, int[] wins, int[] played) {
+        int count = active.length;
+        long spent = 0;
+        
+        while (count > 1 && !PlayoutPool.isExpired(deadline)) {
+            //all active candidates have the same number of playouts
+            long size = Math.min(pool.getBatchSize(), cap - played[active[0]]);
+            size = Math.min(size, (total - spent) / count);
+            if (size <= 0) {
+                break;
+            }
+            rounds.round(active, count, (int) size, deadline, wins, played);
+            spent += size * count;
+            if (played[active[0]] < RACING_MIN_PLAYOUTS) {
+                continue;
+            }
+            
+            //drop candidates whose upper bound is below the best lower bound
+            double bestLower = Double.NEGATIVE_INFINITY;
+            for (int iCount = 0; iCount < count; iCount++) {
+                int c = active[iCount];
+                bestLower = Math.max(bestLower, 
+                        mean(wins[c], played[c]) - radius(wins[c], played[c]));
+            }
+            int kept = 0;
+            for (int iCount = 0; iCount < count; iCount++) {
+                int c = active[iCount];
+                if (mean(wins[c], played[c]) + radius(wins[c], played[c]) 
+                        >= bestLower) {
+                    active[iCount] = active[kept];
+                    active[kept++] = c;
+                }
+            }
+            count = kept;
+        }
+    }
+    
+    /**
+     * Splits the playouts into log2(candidates) rounds of equal size, after
+     * each round keeps the better half of the candidates.
+     * 
+     * @param rounds Playouts of the move
+     * @param active Indices of the candidates, reordered in place
+     * @param total Number of playouts
+     * @param deadline Deadline of the move or PlayoutPool.NO_DEADLINE
+     * @param wins Output, wins for each of the candidates
+     * @param played Output, playouts for each of the candidates
+     */
+    private void halve(PlayoutPool.Rounds rounds, int[] active, long total, 
+            long deadline, int[] wins, int[] played) {
+        int count = active.length;
+        int steps = 32 - Integer.numberOfLeadingZeros(count - 1);
+        long perStep = total / Math.max(1, steps);
+        
+        while (count > 1 && !PlayoutPool.isExpired(deadline)) {
+            long size = Math.max(1, Math.min(perStep / count, Integer.MAX_VALUE));
+            rounds.round(active, count, (int) size, deadline, wins, played);
+            
+            //insertion sort of the active candidates, best first
+            for (int iCount = 1; iCount < count; iCount++) {
+                int c = active[iCount];
+                double value = mean(wins[c], played[c]);
+                int jCount = iCount - 1;
+                while (jCount >= 0 
+                        && mean(wins[active[jCount]], played[active[jCount]]) < value) {
+                    active[jCount + 1] = active[jCount];
+                    jCount--;
+                }
+                active[jCount + 1] = c;
+            }
+            count = (count + 1) / 2;
+        }
+    }
+    
+    private static double mean(int wins, int played) {
+        return played == 0 ? 0.0 : (double) wins / played;
+    }
+    
+    /**
+     * Half width of the confidence interval of a win rate, with the variance
+     * kept away from 0 so that a few lucky playouts don't look certain.
+     */
+    private static double radius(int wins, int played) {
+        if (played == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double p = (double) wins / played;
+        return RACING_Z * Math.sqrt(Math.max(p * (1 - p), 0.01) / played);
+    }
+    
+    /**
+     * Scales a win count to the number of repetitions, so that estimates from
+     * different numbers of playouts can be compared.
+     * 
+     * @param wins Number of wins
+     * @param played Number of playouts
+     * @return Wins per repetitions playouts, 0 if nothing was played
+     */
+    private double scaled(int wins, int played) {
+        return played == 0 ? 0.0 : repetitions * (double) wins / played;
+    }
+    
+    /**
+     * Returns how many playouts per field a budget allows.
+     * 
+     * @param part Budget
+     * @param n Number of fields
+     * @return Playouts per field, Integer.MAX_VALUE if there is no limit
+     */
+    private static int perField(SearchBudget part, int n) {
+        if (!part.hasPlayoutLimit()) {
+            return Integer.MAX_VALUE;
+        }
+        long playouts = (part.getPlayouts() + n - 1) / n;
+        return (int) Math.min(playouts, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Sorts moves from best to worst. If randomizeBest is set and there are
+     * two or more moves with the best result, one of them is chosen randomly
+     * and put first.
+     * 
+     * @param allMoves Moves to sort
+     * @param order Order of moves, from worst to best
+     */
+    private void sortMoves(MCSimulationMove[] allMoves, 
+            Comparator<MCSimulationMove> order) {
+        Arrays.sort(allMoves, order.reversed());
         
         if(this.randomizeBest && allMoves.length > 1){
             int numberOfBestResults = 0;
             //determine how many best results exists
             while (numberOfBestResults!= allMoves.length - 1 && 
-            allMoves[numberOfBestResults].compareTo(allMoves[numberOfBestResults + 1]) == 0){
+            order.compare(allMoves[numberOfBestResults], allMoves[numberOfBestResults + 1]) == 0){
                 numberOfBestResults++;
             }
             //if more then one best result
             if(numberOfBestResults > 1){
                 //chose randomly one
                 int randomIndex = (int) Math.floor(Math.random() * numberOfBestResults);
-                MCSimulationMove temp = new MCSimulationMove(allMoves[randomIndex].getCoordinates(), 
-                allMoves[randomIndex].getProbability());
-                allMoves[randomIndex] = new MCSimulationMove(
-                allMoves[0].getCoordinates(), allMoves[0].getProbability());
+                MCSimulationMove temp = allMoves[randomIndex];
+                allMoves[randomIndex] = allMoves[0];
                 allMoves[0] = temp;
             }                        
         }
-        return allMoves;
     }
     
     /**
@@ -168,7 +707,7 @@ public class PlayerMonteCarlo implements Player {
      * @param boardSize
      * @return 
      */
-    private static byte[] getSequence(int movesPlayed, int boardSize) {
+    static byte[] getSequence(int movesPlayed, int boardSize) {
         byte[] result = new byte[boardSize - movesPlayed - 1];
         int ones = getNumberOfFirstPlayersMoves(movesPlayed, boardSize);
         
@@ -205,7 +744,7 @@ public class PlayerMonteCarlo implements Player {
      * @param ar Array of bytes
      */
     static void shuffleArray(byte[] ar) {
-        Random random = new Random();
+        Random random = ThreadLocalRandom.current();
         for (int i = ar.length - 1; i > 0; i--) {
             int index = random.nextInt(i + 1);
             byte a = ar[index];
@@ -215,103 +754,32 @@ public class PlayerMonteCarlo implements Player {
     }
     
     /**
-     * Checks if player won game. Checks from top to bottom in each row if there is vertical player
-     * fields (1) that are somehow connected to active vertical players fields from previous row
-     * If it doesn't find any active vertical field in row, then halt => player two won
+     * Shuffle the byte array in place with a playout generator. Doesn't
+     * allocate, so playouts can shuffle the same buffer over and over.
      * 
-     * @param b
-     * @param player == 0 => vertical player's move, player == 1 => horizontal player's move
-     * @return 
-     */
-    public static boolean didIWin(Board b, byte player) {
-        //booleans that indicate that on [i] position in currentRow there is 
-        //active vertical field field that's marked by player0
-        boolean[] activeVerticalFieldsInRow = new boolean[b.size];
-        
-        //for first row all "previous" row fields are active 
-        for (int i = 0; i < b.size; i++) {
-            activeVerticalFieldsInRow[i] = true;
-        }
-        
-        int currentRow = 0;
-        boolean winnerUndetermined = true;
-        byte playerWon = 0;
-        
-        while (winnerUndetermined && currentRow < b.size) {
-            activeVerticalFieldsInRow = getPotentialsInRow(b, currentRow, activeVerticalFieldsInRow);
-            checkForMissedActiveFields(b, currentRow, activeVerticalFieldsInRow);
-            if (anyVerticalPlayerOnPotentialFieldInRow(b, currentRow, activeVerticalFieldsInRow)) {
-                currentRow++;
-            } else {
-                winnerUndetermined = false;
-                playerWon = 1;
-            }
-        }
-        return playerWon == player;
-    }
-    /**
-     * checks if there is any active field in currentRow
-     * @param b
-     * @param row
-     * @param activeFields
-     * @return 
+     * @param ar Array of bytes
+     * @param random Generator of the worker
      */
-    private static boolean anyVerticalPlayerOnPotentialFieldInRow(
-            Board b, 
-            int row, 
-            boolean[] activeFields) {
-        
-        for (int i = 0; i < b.size; i++) {
-            if (activeFields[i] && b.isFieldVertical(new Coordinate(row, i))) {
-                return true;
-            }
+    static void shuffleArray(byte[] ar, PlayoutRandom random) {
+        for (int i = ar.length - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            byte a = ar[index];
+            ar[index] = ar[i];
+            ar[i] = a;
         }
-        return false;
-
     }
+    
     /**
-     * marks all fields that are active based on connection with active fields from previous row
-     * this doesn't find all active fields in row, only ones that are connected with previous row
-     * ex: t = 
-     * 1 2 2
-     * 1 1 1
-     * 2 2 1
-     * t[1][1] won't be marked as active, because fields from previous row that t[1][1]is connected to
-     * (t[0][1],t[0][2]) are not active
+     * Checks if player won game. The board has to be full, so if vertical
+     * player didn't connect top and bottom, horizontal player won. Connection
+     * is found with a bit-parallel flood fill that doesn't allocate.
+     * 
      * @param b
-     * @param row
-     * @param previousRowActiveFields
+     * @param player == 0 => vertical player's move, player == 1 => horizontal player's move
      * @return 
      */
-    private static boolean[] getPotentialsInRow(Board b, int row, boolean[] previousRowActiveFields) {
-        boolean potentials[] = new boolean[b.size];
-        for (int i = 0; i < b.size - 1; i++) {
-            potentials[i] = b.isFieldVertical(new Coordinate(row, i)) && (previousRowActiveFields[i] || previousRowActiveFields[i + 1]);
-        }
-        potentials[b.size - 1] = b.isFieldVertical(new Coordinate(row, b.size - 1))
-                && previousRowActiveFields[b.size - 1];
-        return potentials;
-    }
-    /**
-     * finds active fields in row that are horizontally connected to some active field
-     * It has to be started after getPotentialsInRow()
-     * This function marks t[1][1] and t[1][2] from previous example as active
-     * based on connection with t[1][0] that is marked as active by getPotentialsInRow()
-     * @param b
-     * @param currentRow
-     * @param activeVerticalFieldsInRow 
-     */
-    private static void checkForMissedActiveFields(Board b, int currentRow, boolean[] activeVerticalFieldsInRow) {
-        for (int i = 1; i < b.size; i++) {
-            if (!activeVerticalFieldsInRow[i] && b.isFieldVertical(new Coordinate(currentRow, i))) {
-                activeVerticalFieldsInRow[i] = activeVerticalFieldsInRow[i - 1];
-            }
-        }
-        for (int i = b.size - 2; i > 0; i--) {
-            if (!activeVerticalFieldsInRow[i] && b.isFieldVertical(new Coordinate(currentRow, i))) {
-                activeVerticalFieldsInRow[i] = activeVerticalFieldsInRow[i + 1];
-            }
-        }
+    public static boolean didIWin(Board b, byte player) {
+        byte playerWon = b.isVerticalConnected() ? (byte) 0 : (byte) 1;
+        return playerWon == player;
     }
-
 }
@@ -1,13 +1,8 @@
 package hex;
 
 import java.io.File;
-import org.neuroph.core.NeuralNetwork;
-import org.neuroph.core.learning.SupervisedTrainingElement;
-import org.neuroph.core.learning.TrainingSet;
-import org.neuroph.nnet.MultiLayerPerceptron;
-import static org.neuroph.nnet.flat.FlatLearningType.BackPropagation;
-import org.neuroph.nnet.learning.BackPropagation;
-import org.neuroph.util.TransferFunctionType;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  *
@@ -18,99 +13,142 @@ public class PlayerNeuralNetwork implements Player{
     /**
      * A neural network that decides if the move is good or bad.
      */
-    private final NeuralNetwork nn;
+    private final DenseNetwork nn;
+    
+    /**
+     * First layer sums of the last board the player saw, so the next board
+     * only costs the moves played in between.
+     */
+    private final NetworkAccumulator accumulator;
+    
+    /**
+     * Integer version of the network, null if moves are evaluated with the
+     * floating point one.
+     */
+    private QuantizedNetwork quantized;
+    
+    /**
+     * Evaluations of positions seen before, null if there's no cache.
+     */
+    private EvaluationCache cache;
     
     /**
      * Initializes a PlayerNeuralNetwork with neural network loaded from file f.
      * 
-     * @param f Neural network file
+     * @param f Neural network file, a NetworkFile or a Neuroph .nnet file
      */
     public PlayerNeuralNetwork(String f) {
-          nn = NeuralNetwork.load(f);
+          nn = DenseNetwork.load(f);
+          accumulator = new NetworkAccumulator(nn);
 //        System.out.println("learning..." + f);
-//        TrainingSet<SupervisedTrainingElement> trainingSet;// = new TrainingSet<>(49, 1);
-//        trainingSet = TrainingSet.createFromFile("TrainingSetNonNormalized", 49, 1, " ");
-//        nn = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 49, 25, 1);
-//        BackPropagation learningRule = (BackPropagation) nn.getLearningRule();
-//        learningRule.setLearningRate(0.2);
-//        nn.randomizeWeights();
-//        nn.learn(trainingSet);
-//        nn.save(f);
+//        NetworkTrainer trainer = new NetworkTrainer();
+//        trainer.train(new int[]{49, 25, 1},
+//                NetworkTrainer.read("TrainingSetNonNormalized", 49, 1),
+//                NetworkTrainer.read("TestSet", 49, 1)).save(f);
 //        System.out.println("learning finished");
     }
     
+    /**
+     * Sets the cache of evaluated positions. Positions in the cache aren't
+     * evaluated by the network again. The cache should only be shared with
+     * players that use the same network.
+     * 
+     * @param cache Cache, null for none
+     */
+    public void setCache(EvaluationCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Sets whether moves are evaluated by the network with integer weights.
+     * It is faster and a lot smaller, and its outputs differ from the
+     * floating point network's by a few thousandths on average (see
+     * QuantizationBenchmark), which can swap moves the network likes almost
+     * equally.
+     * 
+     * @param quantized true for the integer network
+     */
+    public void setQuantized(boolean quantized) {
+        this.quantized = quantized ? QuantizedNetwork.quantize(nn) : null;
+    }
+    
+    /**
+     * @return true if moves are evaluated by the network with integer weights
+     */
+    public boolean isQuantized() {
+        return quantized != null;
+    }
+    
     @Override
     public Coordinate makeMove(Board b) {
-        //make a deep copy of the board
-        Board boardCopy = b.deepCopy();
+        return makeMoveWithProbability(b)[0].getCoordinates();
+    }
+    
+    /**
+     * Asks the neural network about each of the empty fields. Returns all
+     * moves with the network's outputs as probabilities, best first. Among
+     * equal outputs, the field that comes first row by row comes first.
+     * 
+     * @param b Board
+     * @return Moves with network outputs
+     */
+    public MCSimulationMove[] makeMoveWithProbability(Board b) {
+        if (cache != null) {
+            MCSimulationMove[] cached = cache.get(b);
+            if (cached != null) {
+                return cached;
+            }
+        }
         
-        //get coordinates of empty fields in the board
-        Coordinate[] emptyFields = b.getEmptyFields();
+        //get indices of empty fields in the board, row by row
+        int[] emptyFields = b.getEmptyFieldIndices();
+        Arrays.sort(emptyFields);
 
-        double bestResult = -1;
-        Coordinate bestField  = null;
         int noOfEmptyFields = b.noOfEmptyFields;
         byte player = b.whosOnTheMove();
+        MCSimulationMove[] allMoves = new MCSimulationMove[noOfEmptyFields];
         
-        //for each of the empty fields
-        for (int field = 0; field < noOfEmptyFields; field++) {
-            //set previously checked field to zero
-            if (field > 0) { 
-                Coordinate prev = emptyFields[field - 1];
-                boardCopy.matrix[prev.row][prev.col] = (byte)0; 
-            }
-            
-            //put mark on the field
-            boardCopy.putMark(emptyFields[field], (byte)(player + 1));
-            
-            //ask the neural network if it likes the board
-            double[] input = transformBoardToNNInput(boardCopy, player);
-            nn.setInput(input);
-            nn.calculate();
-            double[] result = nn.getOutput();
-            
-            //check if this is the best result so far
-            if (result[0] > bestResult) {
-                bestResult = result[0];
-                bestField = emptyFields[field];
+        //ask the neural network how it likes the board after each of the
+        //empty fields, all of them in one batch
+        double[] result = new double[noOfEmptyFields];
+        QuantizedNetwork q = quantized;
+        if (q != null) {
+            q.scoreMoves(transformBoardToNNInput(b, player), emptyFields, 
+                    noOfEmptyFields, result);
+        } else {
+            synchronized (accumulator) {
+                accumulator.update(b);
+                accumulator.scoreMoves(player, emptyFields, noOfEmptyFields, 
+                        result);
             }
         }
-        return bestField;
+        
+        for (int field = 0; field < noOfEmptyFields; field++) {
+            allMoves[field] = new MCSimulationMove(
+                    b.intToCoordinate(emptyFields[field]), result[field]);
+        }
+        
+        //stable sort, so the first of equal results stays first
+        Arrays.sort(allMoves, Comparator.reverseOrder());
+        if (cache != null) {
+            cache.put(b, allMoves, noOfEmptyFields);
+        }
+        return allMoves;
     }
     
     /**
-     * Transforms the board to neural network input.
+     * Transforms the board to neural network input: 1 for the fields of the
+     * player, -1 for the opponent's and 0 for empty ones.
      * 
      * @param b Board
      * @param player Which player is neural network, one or two
      * @return Neural network input
      */
-    private static double[] transformBoardToNNInput(Board b, byte player) {
+    static double[] transformBoardToNNInput(Board b, byte player) {
         double[] result = new double[b.size * b.size];
-        
-        //copy matrix to result and apply transformations
-        for (int row = 0; row < b.size; row++) {
-            for (int col = 0; col < b.size; col++) {
-                result[row * b.size + col] = 
-                        (double)(b.matrix[row][col] + f(player, b.matrix[row][col]));
-            }
-        }        
-        
+        Kernels.get().toInput(b.vertical, b.horizontal, result.length, 
+                player, result);
         return result;
     }
     
-    /**
-     * Helper function which does a transformation of input.
-     * 
-     * @param player
-     * @param field
-     * @return 
-     */
-    private static byte f(byte player, byte field) {
-        if      (player == 0 && field == 2) { return -3; }
-        else if (player == 1 && field == 1) { return -2; }
-        else if (player == 1 && field == 2) { return -1; }
-        else                                { return  0; }
-    }
-    
 }
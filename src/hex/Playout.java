@@ -0,0 +1,121 @@
+package hex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class <tt>Playout</tt> plays random games from a position on the board. One
+ * instance is used by one thread only, it owns all of the scratch space it
+ * needs, so playouts don't allocate.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+abstract class Playout {
+
+    /**
+     * Position from which the playouts are played.
+     */
+    protected Board base;
+
+    /**
+     * Indices of empty fields of the base position.
+     */
+    protected int[] emptyFields;
+
+    /**
+     * Player on the move in the base position, 0 or 1.
+     */
+    protected byte player;
+
+    /**
+     * How many moves have been played in the base position.
+     */
+    protected int movesPlayed;
+
+    /**
+     * Number of fields that were marked in playouts so far.
+     */
+    protected long fieldsPlayed;
+
+    /**
+     * Generator of this playout's worker.
+     */
+    protected final PlayoutRandom random;
+
+    protected Playout(Board base, int[] emptyFields) {
+        this.random = new PlayoutRandom(ThreadLocalRandom.current().nextLong());
+        setBase(base, emptyFields);
+    }
+
+    private void setBase(Board base, int[] emptyFields) {
+        this.base = base;
+        this.emptyFields = emptyFields;
+        this.player = base.whosOnTheMove();
+        this.movesPlayed = base.size * base.size - emptyFields.length;
+    }
+
+    /**
+     * Creates a playout of given mode for a position.
+     *
+     * @param mode How playouts are played out
+     * @param base Position from which the playouts are played
+     * @param boardCopy Copy of base that the playout may use as scratch space
+     * @param emptyFields Indices of empty fields of base
+     * @return A new playout
+     */
+    static Playout create(PlayoutMode mode, Board base, Board boardCopy,
+            int[] emptyFields) {
+        switch (mode) {
+            case EARLY_TERMINATION:
+                return new IncrementalPlayout(base, emptyFields);
+            case BIT_SLICED:
+                return new BitSlicedPlayout(base, emptyFields);
+            default:
+                return new FillPlayout(base, boardCopy, emptyFields);
+        }
+    }
+
+    /**
+     * Marks an empty field for the player on the move and plays random games
+     * from there.
+     *
+     * @param candidate Index in emptyFields of the field to mark
+     * @param repetitions How many games to play
+     * @return How many games the player on the move won
+     */
+    abstract int run(int candidate, int repetitions);
+
+    /**
+     * Points this playout to another position on a board of the same size,
+     * so that a worker can keep its playout and scratch space from move to
+     * move. Subclasses rebuild what they derive from the position.
+     *
+     * @param base Position from which the playouts are played
+     * @param emptyFields Indices of empty fields of base
+     * @throws IllegalArgumentException if the board has another size
+     */
+    void retarget(Board base, int[] emptyFields) {
+        if (base.size != this.base.size) {
+            throw new IllegalArgumentException("Board sizes differ.");
+        }
+        setBase(base, emptyFields);
+    }
+
+    /**
+     * Reseeds the generator, so that the following playouts are reproducible.
+     *
+     * @param seed Seed
+     */
+    void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Returns how many fields were marked in all playouts so far, including
+     * candidate fields.
+     *
+     * @return Number of fields marked
+     */
+    long getFieldsPlayed() {
+        return fieldsPlayed;
+    }
+}
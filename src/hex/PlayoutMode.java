@@ -0,0 +1,26 @@
+package hex;
+
+/**
+ * How Monte Carlo playouts are played out.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public enum PlayoutMode {
+
+    /**
+     * Fill all empty fields with a random sequence, then check who won.
+     */
+    FILL,
+
+    /**
+     * Play random moves one by one, keeping connectivity in a union find, and
+     * stop as soon as one of the players connects his edges.
+     */
+    EARLY_TERMINATION,
+
+    /**
+     * Same fills as FILL, but 64 of them at once, one in each bit of a long.
+     * Fastest when playouts come in batches of 64.
+     */
+    BIT_SLICED
+}
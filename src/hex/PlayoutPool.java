@@ -0,0 +1,421 @@
+package hex;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Class <tt>PlayoutPool</tt> is a long-lived pool of worker threads that runs
+ * Monte Carlo playouts. The work for a move is split into small batches of
+ * playouts for one candidate field, and idle workers steal batches from busy
+ * ones, so all of them stay busy until the whole move is done and no threads
+ * are created per move.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class PlayoutPool {
+
+    /**
+     * Default number of playouts in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Deadline of work that has no time limit.
+     */
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    /**
+     * Pools shared by all players, by parallelism.
+     */
+    private static final ConcurrentHashMap<Integer, PlayoutPool> SHARED =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Playouts of each thread that ran batches, kept for the life of the
+     * thread and pointed to the position of each new move.
+     */
+    private static final ThreadLocal<Worker> WORKERS =
+            ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Numbers of the moves evaluated so far, a worker retargets its playout
+     * when it sees a new one.
+     */
+    private static final AtomicLong MOVES = new AtomicLong();
+
+    /**
+     * Work stealing pool that runs the batches.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of playouts in one batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Initializes a new pool.
+     *
+     * @param parallelism Number of worker threads
+     * @param batchSize Number of playouts in one batch
+     */
+    public PlayoutPool(int parallelism, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the pool with given parallelism that is shared by everyone in
+     * this JVM, creating it on first use.
+     *
+     * @param parallelism Number of worker threads
+     * @return Shared pool
+     */
+    public static PlayoutPool shared(int parallelism) {
+        return SHARED.computeIfAbsent(parallelism,
+                p -> new PlayoutPool(p, DEFAULT_BATCH_SIZE));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Plays repetitions playouts for each of the empty fields and counts how
+     * many the player on the move won. The board must not change until this
+     * returns.
+     *
+     * @param base Position from which the playouts are played
+     * @param emptyFields Indices of empty fields of base
+     * @param mode How playouts are played out
+     * @param repetitions Number of playouts per field
+     * @param seed Seed of the move, each batch is seeded from it and its
+     * number, so results don't depend on which worker runs which batch
+     * @return Number of wins for each of the empty fields
+     */
+    public int[] evaluate(Board base, int[] emptyFields, PlayoutMode mode,
+            int repetitions, long seed) {
+        int batches = (repetitions + batchSize - 1) / batchSize;
+        int[] batchWins = new int[emptyFields.length * batches];
+
+        //each worker uses its own playout with its own scratch space
+        long move = MOVES.incrementAndGet();
+        run(batchWins.length, unit -> {
+            //the last batch of a field gets the remainder
+            int field = unit / batches;
+            int batch = unit % batches;
+            int count = Math.min(batchSize, repetitions - batch * batchSize);
+            Playout playout = WORKERS.get().playout(move, mode, base,
+                    emptyFields);
+            playout.setSeed(PlayoutRandom.seed(seed, unit));
+            batchWins[unit] = playout.run(field, count);
+        });
+
+        int[] wins = new int[emptyFields.length];
+        for (int unit = 0; unit < batchWins.length; unit++) {
+            wins[unit / batches] += batchWins[unit];
+        }
+        return wins;
+    }
+
+    /**
+     * Plays playouts for each of the candidates in rounds, one batch per
+     * candidate in each round, until repetitions playouts per candidate are
+     * played or the deadline passes. Batches that would start after the
+     * deadline are skipped, so candidates may end up with different numbers
+     * of playouts. The other empty fields are only filled by the playouts.
+     * The board must not change until this returns.
+     *
+     * @param base Position from which the playouts are played
+     * @param emptyFields Indices of empty fields of base
+     * @param candidates Indices in emptyFields of the fields to play
+     * @param mode How playouts are played out
+     * @param repetitions Largest number of playouts per candidate
+     * @param seed Seed of the move
+     * @param deadline System.nanoTime() after which no batch is started, or
+     * NO_DEADLINE
+     * @param wins Output, number of wins for each of the empty fields
+     * @param played Output, number of playouts for each of the empty fields
+     */
+    void evaluate(Board base, int[] emptyFields, int[] candidates,
+            PlayoutMode mode, int repetitions, long seed, long deadline,
+            int[] wins, int[] played) {
+        int n = candidates.length;
+        long rounds = Math.min((repetitions + (long) batchSize - 1) / batchSize,
+                Integer.MAX_VALUE / Math.max(1, n));
+
+        Rounds evaluation = start(base, emptyFields, mode, seed);
+        for (int round = 0; round < rounds && !isExpired(deadline); round++) {
+            int count = (int) Math.min(batchSize,
+                    repetitions - (long) round * batchSize);
+            evaluation.round(candidates, n, count, deadline, wins, played);
+        }
+    }
+
+    /**
+     * Starts playouts of a move that are run round by round, each round
+     * for the candidates the caller picks.
+     *
+     * @param base Position from which the playouts are played
+     * @param emptyFields Indices of empty fields of base
+     * @param mode How playouts are played out
+     * @param seed Seed of the move
+     * @return Rounds of the move
+     */
+    Rounds start(Board base, int[] emptyFields, PlayoutMode mode, long seed) {
+        return new Rounds(base, emptyFields, mode, seed);
+    }
+
+    /**
+     * Fills all empty fields randomly fills times and, for each of the empty
+     * fields, counts in how many fills it got the mark of the player on the
+     * move and how many of those fills that player won. With a deadline,
+     * batches of fills are run in rounds of a few per worker and no round is
+     * started after the deadline. The board must not change until this
+     * returns.
+     *
+     * @param base Position from which the fills are made
+     * @param emptyFields Indices of empty fields of base
+     * @param fills Largest number of fills
+     * @param seed Seed of the move
+     * @param deadline System.nanoTime() after which no batch is started, or
+     * NO_DEADLINE
+     * @param wins Output, wins of the player on the move for each empty field
+     * @param counts Output, number of fills in which the player on the move
+     * got each of the empty fields
+     * @return Number of fills made
+     */
+    long evaluateShared(Board base, int[] emptyFields, int fills, long seed,
+            long deadline, int[] wins, int[] counts) {
+        int batches = (int) ((fills + (long) batchSize - 1) / batchSize);
+        int perRound = deadline == NO_DEADLINE
+                ? batches : 4 * pool.getParallelism();
+
+        //each thread counts into its own arrays, they are added up at the end
+        long move = MOVES.incrementAndGet();
+        ConcurrentHashMap<Thread, SharedFills> workers = new ConcurrentHashMap<>();
+        for (int first = 0; first < batches && !isExpired(deadline);
+                first += perRound) {
+            run(first, Math.min(batches, first + perRound), deadline, batch -> {
+                int count = (int) Math.min(batchSize,
+                        fills - (long) batch * batchSize);
+                SharedFills worker = workers.computeIfAbsent(
+                        Thread.currentThread(),
+                        t -> new SharedFills(emptyFields.length));
+                FillPlayout playout = (FillPlayout) WORKERS.get().playout(
+                        move, PlayoutMode.FILL, base, emptyFields);
+                playout.setSeed(PlayoutRandom.seed(seed, batch));
+                playout.runShared(count, worker.wins, worker.counts, 0);
+                worker.fills += count;
+            });
+        }
+
+        long made = 0;
+        for (SharedFills worker : workers.values()) {
+            for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+                wins[iCount] += worker.wins[iCount];
+                counts[iCount] += worker.counts[iCount];
+            }
+            made += worker.fills;
+        }
+        return made;
+    }
+
+    /**
+     * Runs units of work 0 to units - 1 on the pool and waits for all of them.
+     *
+     * @param units Number of units
+     * @param work Work to do for a unit
+     */
+    void run(int units, IntConsumer work) {
+        run(0, units, NO_DEADLINE, work);
+    }
+
+    /**
+     * Runs units of work from to to - 1 on the pool and waits for all of
+     * them. Units that would start after the deadline are skipped.
+     *
+     * @param from First unit
+     * @param to Unit after the last one
+     * @param deadline System.nanoTime() after which no unit is started, or
+     * NO_DEADLINE
+     * @param work Work to do for a unit
+     */
+    void run(int from, int to, long deadline, IntConsumer work) {
+        if (to > from) {
+            pool.invoke(new Batches(work, from, to, deadline));
+        }
+    }
+
+    /**
+     * Checks if the deadline has passed.
+     *
+     * @param deadline System.nanoTime() deadline or NO_DEADLINE
+     * @return true if the deadline has passed
+     */
+    static boolean isExpired(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Playouts of one move, run round by round on the pool. Workers keep
+     * their playouts between rounds, and batches are numbered across rounds,
+     * so the same rounds with the same seed give the same results.
+     */
+    final class Rounds {
+
+        private final Board base;
+        private final int[] emptyFields;
+        private final PlayoutMode mode;
+        private final long seed;
+
+        /**
+         * Number of the move, see MOVES.
+         */
+        private final long move;
+
+        /**
+         * Number of batches started in all rounds so far.
+         */
+        private long batches;
+
+        private Rounds(Board base, int[] emptyFields, PlayoutMode mode,
+                long seed) {
+            this.base = base;
+            this.emptyFields = emptyFields;
+            this.mode = mode;
+            this.seed = seed;
+            this.move = MOVES.incrementAndGet();
+        }
+
+        /**
+         * Plays repetitions playouts for each of the candidates and adds the
+         * wins of the player on the move to wins. Batches that would start
+         * after the deadline are skipped.
+         *
+         * @param candidates Indices in emptyFields of the candidates, only
+         * the first count are used
+         * @param count Number of candidates
+         * @param repetitions Playouts per candidate
+         * @param deadline System.nanoTime() after which no batch is
+         * started, or NO_DEADLINE
+         * @param wins Output, wins for each of the empty fields
+         * @param played Output, playouts for each of the empty fields
+         */
+        void round(int[] candidates, int count, int repetitions, long deadline,
+                int[] wins, int[] played) {
+            int perField = (repetitions + batchSize - 1) / batchSize;
+            int units = count * perField;
+            int[] unitWins = new int[units];
+            int[] unitPlayed = new int[units];
+            long first = batches;
+            batches += units;
+
+            run(0, units, deadline, unit -> {
+                int batch = unit % perField;
+                int size = Math.min(batchSize, repetitions - batch * batchSize);
+                Playout playout = WORKERS.get().playout(move, mode, base,
+                        emptyFields);
+                playout.setSeed(PlayoutRandom.seed(seed, first + unit));
+                unitWins[unit] = playout.run(candidates[unit / perField], size);
+                unitPlayed[unit] = size;
+            });
+
+            for (int unit = 0; unit < units; unit++) {
+                wins[candidates[unit / perField]] += unitWins[unit];
+                played[candidates[unit / perField]] += unitPlayed[unit];
+            }
+        }
+    }
+
+    /**
+     * Counts of shared fills of one thread.
+     */
+    private static final class SharedFills {
+
+        private final int[] wins;
+        private final int[] counts;
+        private long fills;
+
+        SharedFills(int fields) {
+            this.wins = new int[fields];
+            this.counts = new int[fields];
+        }
+    }
+
+    /**
+     * Playouts of one thread, one for each mode, made on first use and
+     * retargeted when the thread runs a batch of another move. A playout is
+     * made again only when the size of the board changes.
+     */
+    private static final class Worker {
+
+        private final Playout[] playouts = new Playout[PlayoutMode.values().length];
+
+        /**
+         * Move each of the playouts is pointed to.
+         */
+        private final long[] moves = new long[PlayoutMode.values().length];
+
+        Playout playout(long move, PlayoutMode mode, Board base,
+                int[] emptyFields) {
+            int k = mode.ordinal();
+            Playout playout = playouts[k];
+            if (moves[k] != move) {
+                if (playout == null || playout.base.size != base.size) {
+                    playout = Playout.create(mode, base, base.deepCopy(),
+                            emptyFields);
+                    playouts[k] = playout;
+                } else {
+                    playout.retarget(base, emptyFields);
+                }
+                moves[k] = move;
+            }
+            return playout;
+        }
+    }
+
+    /**
+     * A range of units of work. Ranges are split in halves until a single
+     * unit is left, so idle workers can steal large ranges first.
+     */
+    private static final class Batches extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer work;
+        private final int from;
+        private final int to;
+        private final long deadline;
+
+        Batches(IntConsumer work, int from, int to, long deadline) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batches(work, from, middle, deadline),
+                        new Batches(work, middle, to, deadline));
+                return;
+            }
+            if (!isExpired(deadline)) {
+                work.accept(from);
+            }
+        }
+    }
+}
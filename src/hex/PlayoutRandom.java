@@ -0,0 +1,100 @@
+package hex;
+
+/**
+ * Class <tt>PlayoutRandom</tt> is a fast, non thread safe pseudo random number
+ * generator for playouts (xoshiro256**, seeded through SplitMix64). Every
+ * worker owns one and reseeds it for each batch of playouts, so playouts
+ * don't contend on a shared generator, don't allocate and can be made
+ * reproducible.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class PlayoutRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * Initializes a generator with given seed.
+     *
+     * @param seed Seed
+     */
+    public PlayoutRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Reseeds the generator. Generators with the same seed produce the same
+     * numbers.
+     *
+     * @param seed Seed
+     */
+    public void setSeed(long seed) {
+        s0 = mix(seed += GOLDEN_GAMMA);
+        s1 = mix(seed += GOLDEN_GAMMA);
+        s2 = mix(seed += GOLDEN_GAMMA);
+        s3 = mix(seed + GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns the next pseudo random long.
+     *
+     * @return Random long
+     */
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Returns a pseudo random int uniformly distributed between 0 (inclusive)
+     * and bound (exclusive), without modulo bias.
+     *
+     * @param bound Upper bound, must be positive
+     * @return Random int
+     */
+    public int nextInt(int bound) {
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Combines two values into a well mixed seed, used to derive seeds of
+     * moves and batches from a base seed.
+     *
+     * @param a First value
+     * @param b Second value
+     * @return Mixed seed
+     */
+    public static long seed(long a, long b) {
+        return mix(a ^ mix(b + GOLDEN_GAMMA));
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
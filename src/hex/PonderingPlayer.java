@@ -0,0 +1,24 @@
+package hex;
+
+/**
+ * A player that can keep thinking while the opponent is on the move.
+ * 
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public interface PonderingPlayer extends Player {
+    
+    /**
+     * Starts analysing the position in the background. Returns right away,
+     * the board may change after this returns. The next makeMove keeps the
+     * part of the work that applies to the position it gets.
+     * 
+     * @param b Board with the opponent on the move
+     */
+    public void startPondering(Board b);
+    
+    /**
+     * Stops the background analysis and waits for it to finish. Does nothing
+     * if the player isn't pondering.
+     */
+    public void stopPondering();
+}
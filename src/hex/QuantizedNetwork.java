@@ -0,0 +1,371 @@
+package hex;
+
+import java.util.Arrays;
+
+/**
+ * A <tt>DenseNetwork</tt> with integer weights, evaluated with integer
+ * arithmetic. Board inputs are -1, 0 and 1, so they need no scaling, and the
+ * whole model takes a few kilobytes, small enough to stay in the L1 cache.
+ * <p>
+ * The first layer has 16 bit weights, the other layers 8 bit weights. Each
+ * layer has its own scale, the largest weight of the layer is 32767 or 127.
+ * Weighted sums are 32 bit integers, biases are added in the same units.
+ * Hidden layers' activations are looked up in a table and kept as 16 bit
+ * integers, 32767 stands for 1, so the sums of a layer after a hidden layer
+ * stay in 32 bits up to about 516 hidden neurons, quantize checks the exact
+ * bound of each layer, biases included. Only the activation of the output
+ * layer is computed in floating point, once per output.
+ * <p>
+ * The first layer's weights are stored input by input, like in
+ * <tt>DenseNetwork</tt>, so a candidate move adds one row to the sums of the
+ * position. The other layers' weights are stored output by output, so each
+ * output is a dot product of two contiguous arrays.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class QuantizedNetwork {
+
+    /**
+     * Integer that stands for an activation of 1.
+     */
+    static final int ONE = 32767;
+
+    /**
+     * Number of entries in an activation table.
+     */
+    private static final int TABLE = 4096;
+
+    /**
+     * Activation tables cover weighted sums (times the slope) between -RANGE
+     * and RANGE. Outside of it, sigmoid and tanh are within half of a step of
+     * their limits.
+     */
+    private static final double RANGE = 8.0;
+
+    private final int[] sizes;
+
+    /**
+     * Weights of the first layer, input by input.
+     */
+    private final short[] firstWeights;
+
+    /**
+     * Weights of the other layers, output by output, weights[l] connects
+     * layer l to layer l + 1, weights[0] is null.
+     */
+    private final byte[][] weights;
+
+    /**
+     * Biases of each layer in units of its weighted sums.
+     */
+    private final int[][] biases;
+
+    /**
+     * How many units of weighted sums of each layer make 1.
+     */
+    private final double[] scales;
+
+    /**
+     * Activation tables of the hidden layers, null for the output layer.
+     */
+    private final short[][] tables;
+
+    /**
+     * Multipliers from weighted sums to table indices, index is
+     * (sum * multiplier) >> 32 plus half of the table.
+     */
+    private final long[] multipliers;
+
+    /**
+     * Activation of the output layer.
+     */
+    private final DenseNetwork.Activation outputActivation;
+    private final double outputSlope;
+
+    private QuantizedNetwork(DenseNetwork nn) {
+        int layers = nn.sizes.length - 1;
+        this.sizes = nn.sizes.clone();
+        this.weights = new byte[layers][];
+        this.biases = new int[layers][];
+        this.scales = new double[layers];
+        this.tables = new short[layers][];
+        this.multipliers = new long[layers];
+        this.outputActivation = nn.activations[layers - 1];
+        this.outputSlope = nn.slopes[layers - 1];
+
+        //first layer, inputs are integers
+        double scale = Short.MAX_VALUE / maxAbs(nn.weights[0]);
+        this.firstWeights = new short[nn.weights[0].length];
+        for (int k = 0; k < firstWeights.length; k++) {
+            firstWeights[k] = (short) Math.round(nn.weights[0][k] * scale);
+        }
+        scales[0] = scale;
+
+        //other layers, inputs are activations times ONE
+        for (int l = 1; l < layers; l++) {
+            int n = sizes[l];
+            int m = sizes[l + 1];
+            double[] w = nn.weights[l];
+            double weightScale = Byte.MAX_VALUE / maxAbs(w);
+            weights[l] = new byte[w.length];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    weights[l][j * n + i] =
+                            (byte) Math.round(w[i * m + j] * weightScale);
+                }
+            }
+            scales[l] = ONE * weightScale;
+        }
+
+        for (int l = 0; l < layers; l++) {
+            biases[l] = new int[sizes[l + 1]];
+            for (int j = 0; j < biases[l].length; j++) {
+                biases[l][j] = (int) Math.round(nn.biases[l][j] * scales[l]);
+            }
+            if (l + 1 < layers) {
+                table(nn.activations[l], nn.slopes[l], l);
+            }
+        }
+    }
+
+    /**
+     * Converts the weights of a network to integers.
+     *
+     * @param nn Network
+     * @return Quantized network
+     * @throws IllegalArgumentException if a hidden layer is linear, its
+     * outputs have no range to fit into 16 bits, or the weighted sums of a
+     * layer could overflow 32 bits
+     */
+    public static QuantizedNetwork quantize(DenseNetwork nn) {
+        for (int l = 0; l + 1 < nn.sizes.length; l++) {
+            if (l + 2 < nn.sizes.length
+                    && nn.activations[l] == DenseNetwork.Activation.LINEAR) {
+                throw new IllegalArgumentException(
+                        "Linear hidden layers can't be quantized.");
+            }
+            //largest input times the largest weight, for each input, and
+            //the largest bias in the units of the weights
+            double input = l == 0 ? 1 : ONE;
+            double weight = l == 0 ? Short.MAX_VALUE : Byte.MAX_VALUE;
+            double bias = 0;
+            for (double v : nn.biases[l]) {
+                bias = Math.max(bias, Math.abs(v));
+            }
+            double bound = (nn.sizes[l] + bias / maxAbs(nn.weights[l]))
+                    * input * weight;
+            if (bound > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "Layer " + (l + 1) + " is too large to be quantized.");
+            }
+        }
+        return new QuantizedNetwork(nn);
+    }
+
+    /**
+     * Loads a network saved by Neuroph (a .nnet file) and quantizes it.
+     *
+     * @param file Neuroph network file
+     * @return Quantized network
+     */
+    public static QuantizedNetwork load(String file) {
+        return quantize(DenseNetwork.load(file));
+    }
+
+    /**
+     * @return Number of inputs
+     */
+    public int getInputs() {
+        return sizes[0];
+    }
+
+    /**
+     * @return Number of outputs
+     */
+    public int getOutputs() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * @return Size of the weights and biases in bytes
+     */
+    public int getModelBytes() {
+        int bytes = firstWeights.length * 2;
+        for (int l = 0; l < biases.length; l++) {
+            bytes += biases[l].length * 4;
+            if (weights[l] != null) {
+                bytes += weights[l].length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Evaluates one input.
+     *
+     * @param input Input, getInputs() long, values are rounded to integers
+     * @return Output
+     */
+    public double[] output(double[] input) {
+        int[] sums = Arrays.copyOf(firstSums(input), maxHidden());
+        double[] out = new double[getOutputs()];
+        forward(sums, new short[maxHidden()], new int[maxHidden()], out, 0);
+        return out;
+    }
+
+    /**
+     * Evaluates the moves of a position like
+     * <tt>DenseNetwork.scoreMoves</tt>: the input of each candidate is the
+     * input of the position with 1 at the candidate's field.
+     *
+     * @param input Input of the position, values are rounded to integers
+     * @param candidates Fields, indices into the input
+     * @param count Number of candidates
+     * @param out First output of each candidate, count long
+     */
+    public void scoreMoves(double[] input, int[] candidates, int count,
+            double[] out) {
+        int[] position = firstSums(input);
+        int m = sizes[1];
+        int[] sums = new int[maxHidden()];
+        short[] hidden = new short[maxHidden()];
+        int[] next = new int[maxHidden()];
+        double[] result = new double[getOutputs()];
+
+        for (int c = 0; c < count; c++) {
+            int field = candidates[c];
+            int x = 1 - (int) Math.round(input[field]);
+            int col = field * m;
+            for (int j = 0; j < m; j++) {
+                sums[j] = position[j] + x * firstWeights[col + j];
+            }
+            forward(sums, hidden, next, result, 0);
+            out[c] = result[0];
+        }
+    }
+
+    /**
+     * Weighted sums of the first layer, biases included.
+     */
+    private int[] firstSums(double[] input) {
+        int n = sizes[0];
+        int m = sizes[1];
+        int[] sums = biases[0].clone();
+        for (int i = 0; i < n; i++) {
+            int x = (int) Math.round(input[i]);
+            if (x == 0) {
+                continue;
+            }
+            int col = i * m;
+            for (int j = 0; j < m; j++) {
+                sums[j] += x * firstWeights[col + j];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Evaluates the layers after layer l from its weighted sums.
+     *
+     * @param sums Weighted sums of layer l + 1, overwritten
+     * @param hidden Space for activations
+     * @param next Space for weighted sums
+     * @param out Outputs of the network
+     * @param l Layer of the sums
+     */
+    private void forward(int[] sums, short[] hidden, int[] next, double[] out,
+            int l) {
+        int last = biases.length - 1;
+        for (; l < last; l++) {
+            int n = sizes[l + 1];
+            short[] table = tables[l];
+            long multiplier = multipliers[l];
+            for (int i = 0; i < n; i++) {
+                long index = ((sums[i] * multiplier) >> 32) + TABLE / 2;
+                hidden[i] = table[(int) Math.max(0, Math.min(TABLE - 1, index))];
+            }
+
+            int m = sizes[l + 2];
+            byte[] w = weights[l + 1];
+            int[] bias = biases[l + 1];
+            for (int j = 0; j < m; j++) {
+                int sum = bias[j];
+                int row = j * n;
+                for (int i = 0; i < n; i++) {
+                    sum += hidden[i] * w[row + i];
+                }
+                next[j] = sum;
+            }
+            int[] t = sums;
+            sums = next;
+            next = t;
+        }
+
+        for (int j = 0; j < out.length; j++) {
+            out[j] = activate(sums[j] / scales[last]);
+        }
+    }
+
+    /**
+     * Activation of the output layer.
+     */
+    private double activate(double net) {
+        switch (outputActivation) {
+            case SIGMOID:
+                if (net > 100) {
+                    return 1.0;
+                } else if (net < -100) {
+                    return 0.0;
+                }
+                return 1.0 / (1.0 + Math.exp(-outputSlope * net));
+            case TANH:
+                return DenseNetwork.tanh(net, outputSlope);
+            default:
+                return outputSlope * net;
+        }
+    }
+
+    /**
+     * Makes the activation table and multiplier of hidden layer l + 1.
+     */
+    private void table(DenseNetwork.Activation activation, double slope, int l) {
+        //each entry covers a step of the weighted sum, all entries cover
+        //the sums where slope * sum is in [-RANGE, RANGE)
+        double step = 2 * RANGE / slope / TABLE;
+        short[] table = new short[TABLE];
+        for (int k = 0; k < TABLE; k++) {
+            double x = slope * (k - TABLE / 2 + 0.5) * step;
+            double y = activation == DenseNetwork.Activation.SIGMOID
+                    ? 1.0 / (1.0 + Math.exp(-x)) : Math.tanh(x / 2);
+            table[k] = (short) Math.round(y * ONE);
+        }
+        tables[l] = table;
+        multipliers[l] = Math.round(Math.pow(2, 32) / (step * scales[l]));
+    }
+
+    private int maxHidden() {
+        int max = 0;
+        for (int l = 1; l < sizes.length; l++) {
+            max = Math.max(max, sizes[l]);
+        }
+        return max;
+    }
+
+    private static double maxAbs(double[] values) {
+        double max = 0;
+        for (double v : values) {
+            max = Math.max(max, Math.abs(v));
+        }
+        //all zeros, any scale will do
+        return max == 0 ? 1 : max;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("QuantizedNetwork(");
+        for (int l = 0; l < sizes.length; l++) {
+            s.append(l > 0 ? "-" : "").append(sizes[l]);
+        }
+        return s.append(", ").append(getModelBytes()).append(" bytes)").toString();
+    }
+}
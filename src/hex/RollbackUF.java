@@ -0,0 +1,133 @@
+package hex;
+
+/**
+ *  The <tt>RollbackUF</tt> class represents a <em>union-find data type</em>
+ *  whose unions can be taken back. It supports the same <em>union</em>,
+ *  <em>find</em>, <em>connected</em> and <em>count</em> operations as
+ *  {@link UF}, plus <em>checkpoint</em> and <em>rollback</em>.
+ *  <p>
+ *  <em>checkpoint</em>() returns a marker of the current state and
+ *  <em>rollback</em>(<em>to</em>) undoes all of the unions made after that
+ *  marker was taken, newest first. Checkpoints nest, so a search can take one
+ *  before each move it tries and roll back to it when it retracts the move.
+ *  <p>
+ *  This implementation uses weighted quick union by rank without path
+ *  compression, so every union changes at most one parent link and one rank,
+ *  and both changes are recorded on a trail. Trees stay logarithmically
+ *  shallow, so <em>union</em>, <em>find</em> and <em>connected</em> take
+ *  logarithmic time, and rolling back a union takes constant time.
+ *
+ *  @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class RollbackUF {
+    private int[] id;     // id[i] = parent of i
+    private byte[] rank;  // rank[i] = rank of subtree rooted at i
+    private int count;    // number of components
+
+    // trail[k] = 2 * (root that was attached) + (1 if rank of new root grew)
+    private int[] trail;
+    private int trailSize;
+
+    /**
+     * Initializes an empty union-find data structure with <tt>N</tt>
+     * isolated components <tt>0</tt> through <tt>N-1</tt>
+     * @throws java.lang.IllegalArgumentException if <tt>N &lt; 0</tt>
+     * @param N the number of sites
+     */
+    public RollbackUF(int N) {
+        if (N < 0) throw new IllegalArgumentException();
+        count = N;
+        id = new int[N];
+        rank = new byte[N];
+        trail = new int[Math.max(N - 1, 0)];
+        for (int i = 0; i < N; i++) {
+            id[i] = i;
+        }
+    }
+
+    /**
+     * Returns the component identifier for the component containing site <tt>p</tt>.
+     * @param p the integer representing one object
+     * @return the component identifier for the component containing site <tt>p</tt>
+     * @throws java.lang.IndexOutOfBoundsException unless <tt>0 &le; p &lt; N</tt>
+     */
+    public int find(int p) {
+        if (p < 0 || p >= id.length) throw new IndexOutOfBoundsException();
+        while (p != id[p]) {
+            p = id[p];
+        }
+        return p;
+    }
+
+    /**
+     * Returns the number of components.
+     * @return the number of components (between <tt>1</tt> and <tt>N</tt>)
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Are the two sites <tt>p</tt> and <tt>q</tt> in the same component?
+     * @param p the integer representing one site
+     * @param q the integer representing the other site
+     * @return true if the two sites <tt>p</tt> and <tt>q</tt> are in the same component; false otherwise
+     */
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    /**
+     * Merges the component containing site <tt>p</tt> with the
+     * the component containing site <tt>q</tt> and records the change on
+     * the trail.
+     * @param p the integer representing one site
+     * @param q the integer representing the other site
+     */
+    public void union(int p, int q) {
+        int i = find(p);
+        int j = find(q);
+        if (i == j) return;
+
+        // make root of smaller rank point to root of larger rank
+        if (rank[i] < rank[j]) {
+            id[i] = j;
+            trail[trailSize++] = 2 * i;
+        } else if (rank[i] > rank[j]) {
+            id[j] = i;
+            trail[trailSize++] = 2 * j;
+        } else {
+            id[j] = i;
+            rank[i]++;
+            trail[trailSize++] = 2 * j + 1;
+        }
+        count--;
+    }
+
+    /**
+     * Returns a marker of the current state, to be passed to rollback.
+     * @return number of unions recorded so far
+     */
+    public int checkpoint() {
+        return trailSize;
+    }
+
+    /**
+     * Undoes all unions made after the checkpoint was taken.
+     * @param to value returned by checkpoint
+     * @throws java.lang.IllegalArgumentException if <tt>to</tt> is not a
+     *      checkpoint of the current state or of an earlier one
+     */
+    public void rollback(int to) {
+        if (to < 0 || to > trailSize) throw new IllegalArgumentException();
+        while (trailSize > to) {
+            int entry = trail[--trailSize];
+            int child = entry >>> 1;
+            if ((entry & 1) != 0) {
+                rank[id[child]]--;
+            }
+            id[child] = child;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package hex;
+
+/**
+ * Class <tt>SearchBudget</tt> limits how long a player may think about one
+ * move, by wall-clock time, by number of playouts or by both (whichever runs
+ * out first). Budgets are immutable.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public final class SearchBudget {
+
+    /**
+     * Time limit in milliseconds, 0 if there is none.
+     */
+    private final long millis;
+
+    /**
+     * Limit on the number of playouts for the whole move, 0 if there is none.
+     */
+    private final long playouts;
+
+    private SearchBudget(long millis, long playouts) {
+        if (millis < 0 || playouts < 0) {
+            throw new IllegalArgumentException("Limits can't be negative.");
+        }
+        if (millis == 0 && playouts == 0) {
+            throw new IllegalArgumentException(
+                    "Budget needs a time or a playout limit.");
+        }
+        this.millis = millis;
+        this.playouts = playouts;
+    }
+
+    /**
+     * Creates a budget limited by wall-clock time only.
+     *
+     * @param millis Time per move in milliseconds
+     * @return Budget
+     */
+    public static SearchBudget ofTime(long millis) {
+        return new SearchBudget(millis, 0);
+    }
+
+    /**
+     * Creates a budget limited by number of playouts only.
+     *
+     * @param playouts Playouts per move, for all candidate moves together
+     * @return Budget
+     */
+    public static SearchBudget ofPlayouts(long playouts) {
+        return new SearchBudget(0, playouts);
+    }
+
+    /**
+     * Creates a budget limited by both time and playouts, the search stops
+     * when either of them runs out.
+     *
+     * @param millis Time per move in milliseconds
+     * @param playouts Playouts per move, for all candidate moves together
+     * @return Budget
+     */
+    public static SearchBudget of(long millis, long playouts) {
+        return new SearchBudget(millis, playouts);
+    }
+
+    public boolean hasTimeLimit() {
+        return millis > 0;
+    }
+
+    public boolean hasPlayoutLimit() {
+        return playouts > 0;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Creates a budget with a part of this one's limits, for searches that
+     * are split in phases.
+     *
+     * @param fraction Part of the budget, between 0 and 1
+     * @return Scaled budget, limits are at least 1 if they were set
+     */
+    public SearchBudget scale(double fraction) {
+        long m = hasTimeLimit() ? Math.max(1, Math.round(millis * fraction)) : 0;
+        long p = hasPlayoutLimit() ? Math.max(1, Math.round(playouts * fraction)) : 0;
+        return new SearchBudget(m, p);
+    }
+
+    /**
+     * Calculates the deadline of a search that starts now.
+     *
+     * @param startNanos System.nanoTime() at the start of the search
+     * @return Deadline in System.nanoTime() units, or PlayoutPool.NO_DEADLINE
+     * if there is no time limit
+     */
+    long deadline(long startNanos) {
+        return hasTimeLimit()
+                ? startNanos + millis * 1000000L
+                : PlayoutPool.NO_DEADLINE;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchBudget{" + "millis=" + millis + ", playouts=" + playouts + '}';
+    }
+}
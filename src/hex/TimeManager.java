@@ -0,0 +1,87 @@
+package hex;
+
+/**
+ * Class <tt>TimeManager</tt> spreads one player's total game clock over the
+ * moves the player is still expected to make. Before each move it hands out
+ * a time budget, after the move it is told how long the move really took.
+ * <p>
+ * Hex games rarely fill the whole board, so the number of moves to go is
+ * estimated from the empty fields and the part of the board that is usually
+ * filled when a game ends. A small reserve is never handed out, to cover the
+ * time spent outside of the search.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class TimeManager {
+
+    /**
+     * Part of the empty fields that is expected to be filled before the game
+     * ends.
+     */
+    public static final double EXPECTED_FILL = 0.6;
+
+    /**
+     * Moves to go are never estimated below this, so that the last moves of
+     * a long game still get some time.
+     */
+    public static final int MIN_MOVES_TO_GO = 3;
+
+    /**
+     * Time left on the clock, in milliseconds.
+     */
+    private long remainingMillis;
+
+    /**
+     * Time that is never handed out, in milliseconds.
+     */
+    private final long reserveMillis;
+
+    /**
+     * Initializes a new time manager.
+     *
+     * @param totalMillis Total clock of the player for the game
+     * @param reserveMillis Part of the clock that is never handed out
+     */
+    public TimeManager(long totalMillis, long reserveMillis) {
+        if (totalMillis <= 0 || reserveMillis < 0) {
+            throw new IllegalArgumentException("Invalid clock.");
+        }
+        this.remainingMillis = totalMillis;
+        this.reserveMillis = reserveMillis;
+    }
+
+    public long getRemainingMillis() {
+        return remainingMillis;
+    }
+
+    /**
+     * Estimates how many more moves the player on the move will make.
+     *
+     * @param b Board
+     * @return Expected number of moves to go
+     */
+    public int expectedMovesToGo(Board b) {
+        int moves = (int) Math.ceil(b.getNoOfEmptyFields() * EXPECTED_FILL / 2);
+        return Math.max(MIN_MOVES_TO_GO, moves);
+    }
+
+    /**
+     * Hands out the time budget for the next move.
+     *
+     * @param b Board on which the move is made
+     * @return Time budget of the move, at least one millisecond
+     */
+    public SearchBudget budgetFor(Board b) {
+        long available = remainingMillis - reserveMillis;
+        return SearchBudget.ofTime(Math.max(1, available / expectedMovesToGo(b)));
+    }
+
+    /**
+     * Takes the time a move took off the clock.
+     *
+     * @param elapsedMillis How long the move took
+     */
+    public void moveDone(long elapsedMillis) {
+        remainingMillis = Math.max(0, remainingMillis - elapsedMillis);
+    }
+}
@@ -117,6 +117,19 @@ public class UF {
         }
     }
 
+    /**
+     * Makes this union find a copy of another one of the same size, without
+     * allocating.
+     * @param other union find to copy
+     * @throws java.lang.IllegalArgumentException if sizes differ
+     */
+    public void copyFrom(UF other) {
+        if (other.id.length != id.length) throw new IllegalArgumentException();
+        System.arraycopy(other.id, 0, id, 0, id.length);
+        System.arraycopy(other.rank, 0, rank, 0, rank.length);
+        count = other.count;
+    }
+
     /**
      * Returns the component identifier for the component containing site <tt>p</tt>.
      * @param p the integer representing one object
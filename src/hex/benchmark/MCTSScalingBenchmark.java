@@ -0,0 +1,106 @@
+package hex.benchmark;
+
+import hex.Board;
+import hex.Coordinate;
+import hex.PlayerMCTS;
+import hex.SearchBudget;
+
+/**
+ * Measures how tree-parallel search scales with the number of threads: the
+ * playouts per second on an empty board, and the decision quality as the win
+ * rate against a single threaded player that gets the same time per move.
+ * Run with:
+ * <pre>
+ * java -cp build/classes:lib/* hex.benchmark.MCTSScalingBenchmark [millis per move] [games] [board size]
+ * </pre>
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class MCTSScalingBenchmark {
+
+    /**
+     * Thread counts to measure.
+     */
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    /**
+     * How long the search runs before anything is measured, so that it is
+     * compiled by the JIT.
+     */
+    private static final long WARM_UP_MILLIS = 3000;
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("cores: " + cores + ", size: " + size
+                + ", time per move: " + millis + "ms");
+        System.out.println("threads playouts/s speedup wins vs 1 thread");
+        playoutsPerSecond(1, size, WARM_UP_MILLIS);
+        playoutsPerSecond(2, size, WARM_UP_MILLIS);
+        double single = 0;
+        for (int threads : THREADS) {
+            double rate = playoutsPerSecond(threads, size, millis);
+            if (threads == 1) {
+                single = rate;
+            }
+
+            //the single threaded player has no opponent to compare with
+            String wins = "-";
+            if (threads > 1 && games > 0) {
+                int won = 0;
+                for (int game = 0; game < games; game++) {
+                    won += playGame(threads, size, millis, game % 2 == 0);
+                }
+                wins = String.format("%d/%d", won, games);
+            }
+            System.out.printf("%7d %11.0f %7.2f %s%n",
+                    threads, rate, rate / single, wins);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Searches an empty board for a while, after a warm up move.
+     */
+    private static double playoutsPerSecond(int threads, int size, long millis) {
+        PlayerMCTS player = new PlayerMCTS(1, PlayerMCTS.DEFAULT_EXPLORATION,
+                threads);
+        player.setTreeReuse(false);
+        player.setBudget(SearchBudget.ofTime(Math.max(1, millis / 4)));
+        player.makeMove(new Board(size));
+
+        player.setBudget(SearchBudget.ofTime(millis));
+        long start = System.nanoTime();
+        player.makeMove(new Board(size));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return player.getPlayoutsOfLastMove() / seconds;
+    }
+
+    /**
+     * Plays one game of a multi threaded player against a single threaded
+     * one, with the same time per move.
+     *
+     * @return 1 if the multi threaded player won, 0 otherwise
+     */
+    private static int playGame(int threads, int size, long millis,
+            boolean parallelFirst) {
+        PlayerMCTS parallel = new PlayerMCTS(1, PlayerMCTS.DEFAULT_EXPLORATION,
+                threads);
+        PlayerMCTS single = new PlayerMCTS(1);
+        parallel.setBudget(SearchBudget.ofTime(millis));
+        single.setBudget(SearchBudget.ofTime(millis));
+
+        PlayerMCTS[] players = parallelFirst
+                ? new PlayerMCTS[]{parallel, single}
+                : new PlayerMCTS[]{single, parallel};
+        Board b = new Board(size);
+        while (b.getWinner() == 0) {
+            Coordinate move = players[b.whosOnTheMove()].makeMove(b);
+            b.makeMove(b.getGeometry().index(move));
+        }
+        return (b.getWinner() == 1) == parallelFirst ? 1 : 0;
+    }
+}
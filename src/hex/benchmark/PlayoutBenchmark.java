@@ -0,0 +1,80 @@
+package hex.benchmark;
+
+import hex.Board;
+import hex.MonteCarloSimulation;
+import hex.PlayoutMode;
+import java.util.Random;
+
+/**
+ * Measures playout throughput of each playout mode and how many fields the
+ * early terminating playouts actually mark, per board size. Run with:
+ * <pre>
+ * java -cp build/classes:lib/* hex.benchmark.PlayoutBenchmark [repetitions]
+ * </pre>
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class PlayoutBenchmark {
+
+    /**
+     * Board sizes to measure.
+     */
+    private static final int[] SIZES = {5, 7, 9, 11, 13};
+
+    /**
+     * How many random moves are played before measuring, as a fraction of
+     * the number of fields.
+     */
+    private static final double[] FILLS = {0.0, 0.25, 0.5};
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Random random = new Random(1);
+
+        System.out.println("size fill mode playouts/s fields/playout saved");
+        for (int size : SIZES) {
+            for (double fill : FILLS) {
+                Board b = new Board(size);
+                int moves = (int) (fill * size * size);
+                for (int iCount = 0; iCount < moves; iCount++) {
+                    b.putMark(b.randomEmptyField(random), (byte) (b.whosOnTheMove() + 1));
+                }
+
+                double fullFields = 0;
+                for (PlayoutMode mode : PlayoutMode.values()) {
+                    //warm up, then measure
+                    run(b, mode, Math.max(1, repetitions / 10));
+                    long start = System.nanoTime();
+                    MonteCarloSimulation sim = run(b, mode, repetitions);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    double playouts = (double) repetitions * b.getNoOfEmptyFields();
+                    double fields = sim.getFieldsPlayed() / playouts;
+                    if (mode == PlayoutMode.FILL) {
+                        fullFields = fields;
+                    }
+                    System.out.printf("%4d %4.2f %-17s %12.0f %6.1f %5.1f%%%n",
+                            size, fill, mode, playouts / seconds, fields,
+                            100 * (1 - fields / fullFields));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a single threaded simulation over all empty fields.
+     */
+    private static MonteCarloSimulation run(Board b, PlayoutMode mode,
+            int repetitions) {
+        MonteCarloSimulation sim = new MonteCarloSimulation(
+                b.deepCopy(),
+                b,
+                b.getEmptyFieldIndices(),
+                0,
+                b.getNoOfEmptyFields(),
+                repetitions,
+                mode);
+        sim.run();
+        return sim;
+    }
+}
@@ -0,0 +1,135 @@
+package hex.benchmark;
+
+import hex.Board;
+import hex.Coordinate;
+import hex.DenseNetwork;
+import hex.PlayerNeuralNetwork;
+import hex.QuantizedNetwork;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares a network with its quantized version: the error of both on a
+ * test set, how far apart their outputs are, how often they pick the same
+ * move and how many moves per second each of them evaluates. Run with:
+ * <pre>
+ * java -cp build/classes:lib/* hex.benchmark.QuantizationBenchmark [network] [test set]
+ * </pre>
+ * The test set has a line per example, the inputs and then the expected
+ * output, separated by spaces.
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class QuantizationBenchmark {
+
+    /**
+     * Number of random positions on which the players pick a move.
+     */
+    private static final int POSITIONS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        String file = args.length > 0 ? args[0] : "normalized.nnet";
+        String testSet = args.length > 1 ? args[1] : "TestSet";
+
+        DenseNetwork nn = DenseNetwork.load(file);
+        QuantizedNetwork q = QuantizedNetwork.quantize(nn);
+        System.out.println(nn + " -> " + q);
+
+        //error on the test set
+        double floatError = 0;
+        double quantizedError = 0;
+        double meanDelta = 0;
+        double maxDelta = 0;
+        List<double[]> examples = read(testSet, nn.getInputs());
+        for (double[] example : examples) {
+            double expected = example[nn.getInputs()];
+            double f = nn.output(example)[0];
+            double i = q.output(example)[0];
+            floatError += (f - expected) * (f - expected);
+            quantizedError += (i - expected) * (i - expected);
+            meanDelta += Math.abs(f - i);
+            maxDelta = Math.max(maxDelta, Math.abs(f - i));
+        }
+        int n = examples.size();
+        System.out.printf("test set: %d examples%n", n);
+        System.out.printf("mse float %.6f, quantized %.6f (%+.6f)%n",
+                floatError / n, quantizedError / n,
+                (quantizedError - floatError) / n);
+        System.out.printf("|float - quantized| mean %.6f, max %.6f%n",
+                meanDelta / n, maxDelta);
+
+        //same moves on random positions, and their speed
+        PlayerNeuralNetwork floating = new PlayerNeuralNetwork(file);
+        PlayerNeuralNetwork quantized = new PlayerNeuralNetwork(file);
+        quantized.setQuantized(true);
+        int size = (int) Math.round(Math.sqrt(nn.getInputs()));
+        List<Board> boards = positions(size, new Random(1));
+        int same = 0;
+        for (Board b : boards) {
+            Coordinate f = floating.makeMove(b);
+            Coordinate i = quantized.makeMove(b);
+            if (f.row == i.row && f.col == i.col) {
+                same++;
+            }
+        }
+        System.out.printf("same move in %d of %d positions%n", same, POSITIONS);
+
+        for (int round = 0; round < 3; round++) {
+            double f = movesPerSecond(floating, boards);
+            double i = movesPerSecond(quantized, boards);
+            System.out.printf("moves/s float %.0f, quantized %.0f%n", f, i);
+        }
+    }
+
+    /**
+     * Reads the examples of a test set, inputs followed by the output.
+     */
+    private static List<double[]> read(String file, int inputs)
+            throws IOException {
+        List<double[]> examples = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] values = line.trim().split("\\s+");
+                if (values.length <= inputs) {
+                    continue;
+                }
+                double[] example = new double[inputs + 1];
+                for (int i = 0; i <= inputs; i++) {
+                    example[i] = Double.parseDouble(values[i]);
+                }
+                examples.add(example);
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * Positions after a random number of random moves.
+     */
+    private static List<Board> positions(int size, Random random) {
+        List<Board> boards = new ArrayList<>();
+        for (int iCount = 0; iCount < POSITIONS; iCount++) {
+            Board b = new Board(size);
+            int moves = random.nextInt(size * size - 1);
+            for (int move = 0; move < moves; move++) {
+                b.putMark(b.randomEmptyField(random), (byte) (b.whosOnTheMove() + 1));
+            }
+            boards.add(b);
+        }
+        return boards;
+    }
+
+    private static double movesPerSecond(PlayerNeuralNetwork player,
+            List<Board> boards) {
+        long start = System.nanoTime();
+        for (Board b : boards) {
+            player.makeMoveWithProbability(b);
+        }
+        return boards.size() / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -1,14 +1,15 @@
 package hex.randomboards;
 
 import hex.Board;
-import hex.Coordinate;
+import hex.EvaluationCache;
 import hex.MCSimulationMove;
-import hex.MonteCarloSimulation;
+import hex.PlayoutMode;
+import hex.PlayoutPool;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Used for generating random boards and evaluating them using Monte Carlo, 
@@ -18,6 +19,11 @@ import java.util.logging.Logger;
  */
 public class RandomBoardGenerator {
     
+    /**
+     * Boards are evaluated on the shared pool with a worker per core.
+     */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    
     /**
      * Takes a board as input, adds a number of random moves and then does the
      * Monte Carlo simulations.
@@ -35,6 +41,30 @@ public class RandomBoardGenerator {
             int trialRepetitions,
             int fromMovesToPlay,
             int toMovesToPlay) {
+        return evaluateRandomBoards(board, MonteCarloRepetitions, 
+                trialRepetitions, fromMovesToPlay, toMovesToPlay, null);
+    }
+    
+    /**
+     * Same as evaluateRandomBoards without a cache, but boards that were
+     * evaluated before (with the same number of repetitions) are taken from
+     * the cache.
+     * 
+     * @param board
+     * @param MonteCarloRepetitions
+     * @param trialRepetitions
+     * @param fromMovesToPlay
+     * @param toMovesToPlay
+     * @param cache Cache of evaluated boards, null for none
+     * @return 
+     */
+    public static LinkedList<PairBoardAndRandomMoves> evaluateRandomBoards(
+            Board board,
+            int MonteCarloRepetitions,
+            int trialRepetitions,
+            int fromMovesToPlay,
+            int toMovesToPlay,
+            EvaluationCache cache) {
         
         LinkedList<PairBoardAndRandomMoves> result = new LinkedList<>();
         
@@ -43,7 +73,7 @@ public class RandomBoardGenerator {
                 //make a copy of the board
                 Board boardCopy = board.deepCopy();
                 generateRandomBoard(boardCopy, movesToPlay);
-                MCSimulationMove[] rb = generateAndEvaluateARandomBoard(boardCopy, MonteCarloRepetitions);
+                MCSimulationMove[] rb = generateAndEvaluateARandomBoard(boardCopy, MonteCarloRepetitions, cache);
                 PairBoardAndRandomMoves pair = new PairBoardAndRandomMoves(boardCopy, rb);
                 
                 //add the evaluated board to the result
@@ -60,35 +90,38 @@ public class RandomBoardGenerator {
      * @param b
      * @param movesToPlay
      * @param repetitions
+     * @param cache Cache of evaluated boards, null for none
      * @return Returns moves and success probabilities for each move
      */
     private static MCSimulationMove[] generateAndEvaluateARandomBoard(
             Board b, 
 //            int movesToPlay, 
-            int repetitions
+            int repetitions,
+            EvaluationCache cache
     ) {
-        Board boardCopy = b.deepCopy();
-//        generateRandomBoard(boardCopy, movesToPlay);
-        //Board boardCopy2 = boardCopy.deepCopy();
+        if (cache != null) {
+            MCSimulationMove[] cached = cache.get(b);
+            if (cached != null) {
+                return cached;
+            }
+        }
         
-        MonteCarloSimulation sim = new MonteCarloSimulation(
-                boardCopy, 
-                b, 
-                b.getEmptyFields(), 
-                0, 
-                b.getEmptyFields().length, 
-                repetitions, 
-                b.getSize() * b.getSize() - (b.getEmptyFields().length - 1), 
-                b.whosOnTheMove());
+        //run the playouts on the shared pool
+        int[] emptyFields = b.getEmptyFieldIndices();
+        int[] wins = PlayoutPool.shared(THREADS).evaluate(b, emptyFields, 
+                PlayoutMode.FILL, repetitions, 
+                ThreadLocalRandom.current().nextLong());
         
-        sim.start();
-        try {
-            sim.join();
-        } catch (InterruptedException ex) {
-            Logger.getLogger(RandomBoardGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        MCSimulationMove[] result = new MCSimulationMove[emptyFields.length];
+        for (int iCount = 0; iCount < emptyFields.length; iCount++) {
+            result[iCount] = new MCSimulationMove(
+                    b.intToCoordinate(emptyFields[iCount]), 
+                    1.0 * wins[iCount], repetitions);
         }
-        MCSimulationMove[] result = sim.getAllMoves();
         Arrays.sort(result, Comparator.reverseOrder());
+        if (cache != null) {
+            cache.put(b, result, (long) repetitions * result.length);
+        }
         
         return result;
     }
@@ -101,18 +134,12 @@ public class RandomBoardGenerator {
      */
     private static void generateRandomBoard(Board b, int movesToPlay) {
         
-        for (int iCount = 0; iCount < movesToPlay; iCount++) {
-            boolean moveLegal = false;
-            
-            while (!moveLegal) {
-                int intMove = (int) (Math.random() * (b.getSize() * b.getSize()));
-                Coordinate move = b.intToCoordinate(intMove);
-                
-                if (b.isMoveLegal(move)) {
-                    moveLegal = true;
-                    b.putMark(move, (byte) (b.whosOnTheMove() + 1));
-                }
-            }
+        Random random = ThreadLocalRandom.current();
+        
+        for (int iCount = 0; iCount < movesToPlay && b.getNoOfEmptyFields() > 0; iCount++) {
+            //pick one of the empty fields, no need to retry on marked ones
+            int move = b.randomEmptyField(random);
+            b.putMark(move, (byte) (b.whosOnTheMove() + 1));
         }
     }
 }
@@ -0,0 +1,193 @@
+package hex;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class BoardTest {
+
+    public BoardTest() {
+    }
+
+    @Test
+    public void testPutAndRemoveMark() {
+        Board b = new Board(9);
+
+        assertTrue(b.putMark(new Coordinate(0, 0), (byte) 1));
+        assertTrue(b.putMark(new Coordinate(8, 8), (byte) 2));
+        assertFalse(b.putMark(new Coordinate(8, 8), (byte) 1));
+        assertEquals(79, b.getNoOfEmptyFields());
+        assertEquals(1, b.getMark(0, 0));
+        assertEquals(2, b.getMark(8, 8));
+        assertTrue(b.isFieldVertical(new Coordinate(0, 0)));
+        assertFalse(b.isFieldVertical(new Coordinate(8, 8)));
+
+        assertTrue(b.removeMark(new Coordinate(8, 8)));
+        assertFalse(b.removeMark(new Coordinate(8, 8)));
+        assertEquals(0, b.getMark(8, 8));
+        assertEquals(80, b.getNoOfEmptyFields());
+        assertEquals(1, b.whosOnTheMove());
+    }
+
+    @Test
+    public void testEmptyFields() {
+        Board b = new Board(5);
+        Random random = new Random(42);
+
+        for (int iCount = 0; iCount < 10; iCount++) {
+            b.putMark(b.randomEmptyField(random), (byte) (b.whosOnTheMove() + 1));
+        }
+        b.removeMark(b.intToCoordinate(findMarked(b)));
+
+        //list of empty fields has to match the marks on the board
+        int[] empty = b.getEmptyFieldIndices();
+        assertEquals(b.getNoOfEmptyFields(), empty.length);
+        assertEquals(b.getEmptyFields().length, empty.length);
+        for (int field : empty) {
+            assertFalse(b.isFieldMarked(field));
+        }
+        Arrays.sort(empty);
+        for (int iCount = 1; iCount < empty.length; iCount++) {
+            assertTrue(empty[iCount - 1] != empty[iCount]);
+        }
+    }
+
+    @Test
+    public void testDeepCopy() {
+        Board b = new Board(7);
+        b.putMark(new Coordinate(3, 3), (byte) 1);
+        b.putMark(new Coordinate(2, 4), (byte) 2);
+
+        Board copy = b.deepCopy();
+        copy.putMark(new Coordinate(0, 0), (byte) 1);
+
+        assertEquals(b.toSingleRowString(false).length(),
+                copy.toSingleRowString(false).length());
+        assertFalse(b.isFieldMarked(new Coordinate(0, 0)));
+        assertEquals(47, b.getNoOfEmptyFields());
+        assertEquals(46, copy.getNoOfEmptyFields());
+        assertEquals(2, copy.getMark(2, 4));
+    }
+
+    @Test
+    public void testHash() {
+        Board a = new Board(7);
+        Board b = new Board(7);
+        long empty = a.getHash();
+
+        //same position reached through different move orders
+        a.putMark(new Coordinate(1, 1), (byte) 1);
+        a.putMark(new Coordinate(2, 2), (byte) 2);
+        a.putMark(new Coordinate(3, 3), (byte) 1);
+        b.putMark(new Coordinate(3, 3), (byte) 1);
+        b.putMark(new Coordinate(2, 2), (byte) 2);
+        b.putMark(new Coordinate(1, 1), (byte) 1);
+        assertEquals(a.getHash(), b.getHash());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.getHash(), a.deepCopy().getHash());
+
+        //putting and removing a mark restores the hash
+        b.putMark(new Coordinate(4, 4), (byte) 2);
+        b.putMark(new Coordinate(5, 5), (byte) 2);
+        b.removeMark(new Coordinate(5, 5));
+        a.putMark(new Coordinate(4, 4), (byte) 2);
+        assertEquals(a.getHash(), b.getHash());
+        assertEquals(a, b);
+
+        a.removeMark(new Coordinate(4, 4));
+        assertTrue(a.getHash() != b.getHash());
+        assertFalse(a.equals(b));
+
+        a.removeMark(new Coordinate(1, 1));
+        a.removeMark(new Coordinate(2, 2));
+        a.removeMark(new Coordinate(3, 3));
+        assertEquals(empty, a.getHash());
+    }
+
+    @Test
+    public void testUndoRedo() {
+        Board b = new Board(5);
+        Board start = b.deepCopy();
+
+        b.makeMove(12);
+        b.makeMove(3);
+        BoardSnapshot afterTwo = b.snapshot();
+        b.makeMove(20);
+        assertEquals(3, b.getHistorySize());
+        assertEquals(1, b.getMark(4, 0));
+
+        assertEquals(20, b.undoMove());
+        assertEquals(afterTwo, b.snapshot());
+        assertEquals(3, b.undoMove());
+        assertEquals(12, b.undoMove());
+        assertEquals(-1, b.undoMove());
+        assertEquals(start, b);
+
+        assertEquals(12, b.redoMove());
+        assertEquals(3, b.redoMove());
+        assertEquals(afterTwo.getHash(), b.getHash());
+        assertEquals(b, afterTwo.toBoard());
+
+        //a new move drops the moves that could be redone
+        b.makeMove(0);
+        assertEquals(-1, b.redoMove());
+        assertEquals(1, b.getMark(0, 0));
+    }
+
+    @Test
+    public void testSymmetry() {
+        Board b = new Board(5);
+        b.makeMove(7);
+        b.makeMove(3);
+        b.makeMove(11);
+
+        //images have the hash getHash(s) promises and map back
+        for (BoardSymmetry s : BoardSymmetry.values()) {
+            Board image = b.transform(s);
+            assertEquals(b.getHash(s), image.getHash());
+            assertEquals(b, image.transform(s));
+            assertEquals(b.getCanonicalHash(), image.getCanonicalHash());
+            assertEquals(b.canonical(), image.canonical());
+        }
+
+        //the rotated hash follows marks that are put and removed
+        b.putMark(20, (byte) 1);
+        b.removeMark(3);
+        Board rotated = b.transform(BoardSymmetry.ROTATE_180);
+        assertEquals(rotated.getHash(), b.getHash(BoardSymmetry.ROTATE_180));
+        assertEquals(b.getHash(), rotated.getHash(BoardSymmetry.ROTATE_180));
+        assertEquals(b.transform(b.canonicalRotation()),
+                rotated.transform(rotated.canonicalRotation()));
+        b.removeMark(20);
+        b.putMark(3, (byte) 2);
+
+        //diagonal mirrors swap colours and the player on the move
+        Board mirrored = b.transform(BoardSymmetry.TRANSPOSE_SWAP);
+        assertEquals(2, mirrored.getMark(2, 1));
+        assertEquals(1, mirrored.getMark(3, 0));
+        assertEquals(1 - b.whosOnTheMove(), mirrored.whosOnTheMove());
+
+        //the centre and pairs of rotated marks keep the board symmetric
+        Board c = new Board(5);
+        c.makeMove(12);
+        assertTrue(c.isSymmetric(BoardSymmetry.ROTATE_180));
+        c.makeMove(1);
+        assertFalse(c.isSymmetric(BoardSymmetry.ROTATE_180));
+        c.putMark(23, (byte) 2);
+        assertTrue(c.isSymmetric(BoardSymmetry.ROTATE_180));
+        assertFalse(c.isSymmetric(BoardSymmetry.TRANSPOSE_SWAP));
+    }
+
+    private static int findMarked(Board b) {
+        for (int i = 0; i < b.getSize() * b.getSize(); i++) {
+            if (b.isFieldMarked(i)) { return i; }
+        }
+        return -1;
+    }
+}
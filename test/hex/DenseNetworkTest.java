@@ -0,0 +1,223 @@
+package hex;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class DenseNetworkTest {
+
+    public DenseNetworkTest() {
+    }
+
+    @Test
+    public void testSameOutputsAsNeuroph() throws IOException {
+        NeuralNetwork nn = NeuralNetwork.load("normalized.nnet");
+        DenseNetwork dense = DenseNetwork.fromNeuroph(nn);
+        assertEquals(49, dense.getInputs());
+        assertEquals(1, dense.getOutputs());
+
+        //a batch of the first positions of the test set
+        int batch = 100;
+        double[] inputs = new double[batch * 49];
+        try (BufferedReader in = new BufferedReader(new FileReader("TestSet"))) {
+            for (int b = 0; b < batch; b++) {
+                String[] values = in.readLine().trim().split(" ");
+                for (int i = 0; i < 49; i++) {
+                    inputs[b * 49 + i] = Double.parseDouble(values[i]);
+                }
+            }
+        }
+        double[] out = new double[batch];
+        dense.outputs(inputs, batch, out);
+
+        for (int b = 0; b < batch; b++) {
+            double[] input = new double[49];
+            System.arraycopy(inputs, b * 49, input, 0, 49);
+            nn.setInput(input);
+            nn.calculate();
+            assertEquals(nn.getOutput()[0], out[b], 1e-12);
+            assertEquals(out[b], dense.output(input)[0], 1e-12);
+        }
+
+        //Neuroph's tanh with its default slope of 2 is tanh(net)
+        NeuralNetwork tanh = new MultiLayerPerceptron(
+                TransferFunctionType.TANH, 3, 4, 1);
+        tanh.randomizeWeights(new Random(3));
+        dense = DenseNetwork.fromNeuroph(tanh);
+        Random random = new Random(4);
+        for (int b = 0; b < batch; b++) {
+            double[] input = new double[3];
+            for (int i = 0; i < 3; i++) {
+                input[i] = 6 * random.nextDouble() - 3;
+            }
+            tanh.setInput(input);
+            tanh.calculate();
+            assertEquals(tanh.getOutput()[0], dense.output(input)[0], 1e-12);
+        }
+    }
+
+    @Test
+    public void testScoreMoves() {
+        DenseNetwork dense = DenseNetwork.load("normalized.nnet");
+        Board b = new Board(7);
+        b.putMark(24, (byte) 1);
+        b.putMark(17, (byte) 2);
+        int[] emptyFields = b.getEmptyFieldIndices();
+        int n = b.noOfEmptyFields;
+
+        double[] input = PlayerNeuralNetwork.transformBoardToNNInput(b, (byte) 0);
+        double[] scores = new double[n];
+        dense.scoreMoves(input, emptyFields, n, scores);
+
+        for (int c = 0; c < n; c++) {
+            double[] one = input.clone();
+            one[emptyFields[c]] = 1.0;
+            assertEquals(dense.output(one)[0], scores[c], 1e-12);
+        }
+    }
+
+    @Test
+    public void testAccumulator() {
+        DenseNetwork dense = DenseNetwork.load("normalized.nnet");
+        NetworkAccumulator accumulator = new NetworkAccumulator(dense);
+        Board b = new Board(7);
+        Random random = new Random(5);
+
+        //follow a game, taking a move back now and then
+        for (int move = 0; move < 30; move++) {
+            int i = b.randomEmptyField(random);
+            b.putMark(i, (byte) (b.whosOnTheMove() + 1));
+            if (move % 5 == 4) {
+                b.removeMark(i);
+            }
+            accumulator.update(b);
+
+            byte player = b.whosOnTheMove();
+            int[] emptyFields = b.getEmptyFieldIndices();
+            int n = b.noOfEmptyFields;
+            double[] expected = new double[n];
+            double[] scores = new double[n];
+            dense.scoreMoves(PlayerNeuralNetwork.transformBoardToNNInput(b, player),
+                    emptyFields, n, expected);
+            accumulator.scoreMoves(player, emptyFields, n, scores);
+            assertArrayEquals(expected, scores, 1e-12);
+        }
+    }
+
+    @Test
+    public void testQuantized() {
+        DenseNetwork dense = DenseNetwork.load("normalized.nnet");
+        QuantizedNetwork quantized = QuantizedNetwork.quantize(dense);
+        Board b = new Board(7);
+        Random random = new Random(7);
+
+        for (int move = 0; move < 40; move++) {
+            byte player = b.whosOnTheMove();
+            int[] emptyFields = b.getEmptyFieldIndices();
+            int n = b.noOfEmptyFields;
+            double[] input = PlayerNeuralNetwork.transformBoardToNNInput(b, player);
+            double[] expected = new double[n];
+            double[] scores = new double[n];
+            dense.scoreMoves(input, emptyFields, n, expected);
+            quantized.scoreMoves(input, emptyFields, n, scores);
+            assertArrayEquals(expected, scores, 0.01);
+
+            //a candidate is the position with one more input
+            input[emptyFields[0]] = 1.0;
+            assertEquals(scores[0], quantized.output(input)[0], 1e-12);
+
+            b.putMark(b.randomEmptyField(random), (byte) (player + 1));
+        }
+
+        //a tanh network, in the hidden layer's table and the output layer,
+        //its outputs span twice the range of the sigmoid's
+        NeuralNetwork tanh = new MultiLayerPerceptron(
+                TransferFunctionType.TANH, 49, 25, 1);
+        tanh.randomizeWeights(new Random(8));
+        quantized = QuantizedNetwork.quantize(DenseNetwork.fromNeuroph(tanh));
+        b = new Board(7);
+        for (int move = 0; move < 40; move++) {
+            byte player = b.whosOnTheMove();
+            double[] input = PlayerNeuralNetwork.transformBoardToNNInput(b, player);
+            tanh.setInput(input);
+            tanh.calculate();
+            assertEquals(tanh.getOutput()[0], quantized.output(input)[0], 0.02);
+            b.putMark(b.randomEmptyField(random), (byte) (player + 1));
+        }
+
+        //516 hidden neurons fit into 32 bit sums, unless the output's bias
+        //is as large as its weights
+        double[] bias = new double[1];
+        DenseNetwork wide = new DenseNetwork(new int[]{9, 516, 1},
+                new double[][]{new double[9 * 516], new double[516]},
+                new double[][]{new double[516], bias},
+                new DenseNetwork.Activation[]{DenseNetwork.Activation.SIGMOID,
+                    DenseNetwork.Activation.SIGMOID},
+                new double[]{1.0, 1.0});
+        QuantizedNetwork.quantize(wide);
+        bias[0] = 1.0;
+        try {
+            QuantizedNetwork.quantize(wide);
+            fail("Sums with the bias overflow 32 bits.");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testNetworkFile() throws IOException {
+        DenseNetwork nn = DenseNetwork.load("normalized.nnet");
+        assertFalse(NetworkFile.isNetworkFile("normalized.nnet"));
+
+        File file = File.createTempFile("normalized", ".bin");
+        try {
+            NetworkFile.write(nn, file.getPath());
+            assertTrue(NetworkFile.isNetworkFile(file.getPath()));
+            DenseNetwork loaded = DenseNetwork.load(file.getPath());
+            assertEquals(nn.toString(), loaded.toString());
+
+            double[] input = new double[49];
+            input[24] = 1;
+            input[17] = -1;
+            assertEquals(nn.output(input)[0], loaded.output(input)[0], 0.0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTiesGoToTheFirstField() throws IOException {
+        //a network without weights likes all moves the same
+        DenseNetwork flat = new DenseNetwork(new int[]{9, 2, 1},
+                new double[][]{new double[18], new double[2]},
+                new double[][]{new double[2], new double[1]},
+                new DenseNetwork.Activation[]{DenseNetwork.Activation.SIGMOID,
+                    DenseNetwork.Activation.SIGMOID},
+                new double[]{1.0, 1.0});
+        File file = File.createTempFile("flat", ".bin");
+        try {
+            NetworkFile.write(flat, file.getPath());
+            PlayerNeuralNetwork player = new PlayerNeuralNetwork(file.getPath());
+
+            //marking field 0 puts field 8 first in the list of empty fields
+            Board b = new Board(3);
+            b.makeMove(0);
+            assertEquals(8, b.getEmptyFieldIndices()[0]);
+            Coordinate move = player.makeMove(b);
+            assertEquals(0, move.row);
+            assertEquals(1, move.col);
+        } finally {
+            file.delete();
+        }
+    }
+}
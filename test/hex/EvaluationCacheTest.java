@@ -0,0 +1,135 @@
+package hex;
+
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class EvaluationCacheTest {
+
+    public EvaluationCacheTest() {
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        EvaluationCache cache = new EvaluationCache(64, EvictionPolicy.LRU);
+        Board b = new Board(5);
+        MCSimulationMove[] moves = {
+            new MCSimulationMove(new Coordinate(2, 2), 10.0, 100)
+        };
+
+        assertNull(cache.get(b));
+        cache.put(b, moves, 100);
+        assertEquals(2, cache.get(b)[0].getCoordinates().row);
+        assertEquals(100, cache.get(b)[0].getVisits());
+
+        //same marks with the other player on the move is another position
+        Board swapped = new Board(5, b.vertical, b.horizontal, (byte) 1);
+        assertNull(cache.get(swapped));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testEviction() {
+        //capacity of one bucket, so every position competes for it
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            EvaluationCache cache = new EvaluationCache(4, policy);
+            Board[] boards = new Board[5];
+            for (int iCount = 0; iCount < 5; iCount++) {
+                boards[iCount] = new Board(5);
+                boards[iCount].putMark(iCount, (byte) 1);
+                cache.put(boards[iCount], new MCSimulationMove[0],
+                        iCount == 0 ? 1000 : iCount);
+                if (iCount == 3) {
+                    //make the expensive entry the least recently used
+                    cache.get(boards[1]);
+                    cache.get(boards[2]);
+                    cache.get(boards[3]);
+                }
+            }
+
+            assertEquals(4, cache.size());
+            assertEquals(1, cache.getEvictions());
+            if (policy == EvictionPolicy.LRU) {
+                assertNull(cache.get(boards[0]));
+                assertNotNull(cache.get(boards[1]));
+            } else {
+                assertNotNull(cache.get(boards[0]));
+                assertNull(cache.get(boards[1]));
+            }
+            assertNotNull(cache.get(boards[4]));
+        }
+    }
+
+    @Test
+    public void testCanonicalKeys() {
+        EvaluationCache cache = new EvaluationCache(64, EvictionPolicy.LRU, true);
+        Board b = new Board(5);
+        b.makeMove(1);
+        Board rotated = b.transform(BoardSymmetry.ROTATE_180);
+        cache.put(b, new MCSimulationMove[]{
+            new MCSimulationMove(new Coordinate(0, 0), 7.0, 10)}, 10);
+
+        //the rotated position shares the entry, its move is rotated too
+        MCSimulationMove[] moves = cache.get(rotated);
+        assertNotNull(moves);
+        assertEquals(4, moves[0].getCoordinates().row);
+        assertEquals(4, moves[0].getCoordinates().col);
+        assertEquals(0, cache.get(b)[0].getCoordinates().row);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testConcurrentPutsOfOnePosition() throws InterruptedException {
+        EvaluationCache cache = new EvaluationCache(64, EvictionPolicy.LRU);
+        Board b = new Board(5);
+        b.makeMove(12);
+        MCSimulationMove[] moves = new MCSimulationMove[0];
+
+        //threads that store the same position at once share one slot
+        for (int round = 0; round < 2000; round++) {
+            cache.clear();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[8];
+            for (int iCount = 0; iCount < threads.length; iCount++) {
+                long effort = iCount;
+                threads[iCount] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    cache.put(b, moves, effort);
+                });
+                threads[iCount].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testPlayerMonteCarloUsesCache() {
+        EvaluationCache cache = new EvaluationCache(16, EvictionPolicy.LRU);
+        PlayerMonteCarlo player = new PlayerMonteCarlo(50, 1, false);
+        player.setCache(cache);
+        Board b = new Board(5);
+
+        MCSimulationMove[] first = player.makeMoveWithProbability(b);
+        assertTrue(player.getPlayoutsOfLastMove() > 0);
+        MCSimulationMove[] second = player.makeMoveWithProbability(b);
+        assertEquals(0, player.getPlayoutsOfLastMove());
+        assertEquals(first[0].getCoordinates().row, second[0].getCoordinates().row);
+        assertEquals(first[0].getCoordinates().col, second[0].getCoordinates().col);
+        assertEquals(1, cache.getHits());
+    }
+}
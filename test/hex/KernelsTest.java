@@ -0,0 +1,60 @@
+package hex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class KernelsTest {
+
+    public KernelsTest() {
+    }
+
+    @Test
+    public void testToInput() {
+        //11x11 has fields in two words and a tail shorter than any vector
+        Board b = new Board(11);
+        PlayoutRandom random = new PlayoutRandom(1);
+        for (int iCount = 0; iCount < 60; iCount++) {
+            int i = random.nextInt(121);
+            if (b.getMark(i) == 0) {
+                b.putMark(i, (byte) (iCount % 2 + 1));
+            }
+        }
+
+        for (byte player = 0; player < 2; player++) {
+            double[] out = new double[121];
+            Kernels.get().toInput(b.vertical, b.horizontal, 121, player, out);
+            for (int i = 0; i < 121; i++) {
+                byte mark = b.getMark(i);
+                double expected = mark == 0 ? 0 : mark == player + 1 ? 1 : -1;
+                assertEquals(expected, out[i], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testCredit() {
+        PlayoutRandom random = new PlayoutRandom(2);
+        byte[] fill = new byte[37];
+        int[] counts = new int[40];
+        int[] wins = new int[40];
+        int[] expectedCounts = new int[40];
+        int[] expectedWins = new int[40];
+
+        for (int game = 0; game < 20; game++) {
+            for (int i = 0; i < fill.length; i++) {
+                fill[i] = (byte) (random.nextInt(2) + 1);
+            }
+            boolean won = game % 3 == 0;
+            Kernels.get().credit(fill, (byte) 2, won, counts, wins, 3);
+            new Kernels().credit(fill, (byte) 2, won, expectedCounts,
+                    expectedWins, 3);
+        }
+
+        assertArrayEquals(expectedCounts, counts);
+        assertArrayEquals(expectedWins, wins);
+    }
+}
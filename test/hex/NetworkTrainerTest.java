@@ -0,0 +1,60 @@
+package hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.encog.engine.data.EngineData;
+import org.encog.engine.network.flat.FlatNetwork;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class NetworkTrainerTest {
+
+    public NetworkTrainerTest() {
+    }
+
+    @Test
+    public void testSameOutputsAsFlatNetwork() {
+        FlatNetwork flat = NetworkTrainer.createNetwork(new int[]{5, 4, 3, 2});
+        double[] weights = flat.getWeights();
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = Math.sin(k);
+        }
+        DenseNetwork dense = NetworkTrainer.toDenseNetwork(flat);
+
+        double[] input = {1, -1, 0, 0.5, 1};
+        double[] expected = new double[2];
+        flat.clearContext();
+        flat.compute(input, expected);
+        assertArrayEquals(expected, dense.output(input), 1e-12);
+    }
+
+    @Test
+    public void testTrainAndSave() throws IOException {
+        List<EngineData> examples = NetworkTrainer.read("TestSet", 49, 1);
+        List<EngineData> training = examples.subList(0, 2000);
+        List<EngineData> validation = examples.subList(2000, 2500);
+
+        NetworkTrainer trainer = new NetworkTrainer();
+        trainer.setMaxEpochs(5);
+        trainer.setThreads(1);
+        DenseNetwork nn = trainer.train(new int[]{49, 5, 1}, training, validation);
+        assertTrue(trainer.getEpochs() <= 5);
+        assertTrue(trainer.getBestError() < 0.1);
+
+        //the saved network is the same network
+        File file = File.createTempFile("trained", ".nnet");
+        try {
+            nn.save(file.getPath());
+            DenseNetwork loaded = DenseNetwork.load(file.getPath());
+            double[] input = training.get(0).getInputArray();
+            assertEquals(nn.output(input)[0], loaded.output(input)[0], 1e-12);
+        } finally {
+            file.delete();
+        }
+    }
+}
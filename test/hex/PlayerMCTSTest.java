@@ -0,0 +1,93 @@
+package hex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class PlayerMCTSTest {
+
+    public PlayerMCTSTest() {
+    }
+
+    @Test
+    public void testFindsWinningMove() {
+        Board b = new Board(3);
+        b.makeMove(b.getGeometry().index(0, 1));
+        b.makeMove(b.getGeometry().index(2, 0));
+        b.makeMove(b.getGeometry().index(1, 1));
+        b.makeMove(b.getGeometry().index(1, 0));
+
+        //only (2, 1) connects first player right away
+        PlayerMCTS player = new PlayerMCTS(2000);
+        player.setSeed(1);
+        Coordinate move = player.makeMove(b);
+        assertEquals(2, move.row);
+        assertEquals(1, move.col);
+    }
+
+    @Test
+    public void testTreeReuse() {
+        Board b = new Board(5);
+        PlayerMCTS player = new PlayerMCTS(5000);
+        player.setSeed(7);
+
+        b.makeMove(b.getGeometry().index(player.makeMove(b)));
+        assertEquals(0, player.getReusedPlayouts());
+        b.makeMove(b.getEmptyField(0));
+
+        //the opponent's reply was searched from the last move
+        b.makeMove(b.getGeometry().index(player.makeMove(b)));
+        assertTrue(player.getReusedPlayouts() > 0);
+
+        player.setTreeReuse(false);
+        b.makeMove(b.getEmptyField(0));
+        player.makeMove(b);
+        assertEquals(0, player.getReusedPlayouts());
+    }
+
+    @Test
+    public void testTreeParallelSearch() {
+        Board b = new Board(7);
+        PlayerMCTS player = new PlayerMCTS(4000, PlayerMCTS.DEFAULT_EXPLORATION, 4);
+
+        //every playout is counted once, no matter which thread played it
+        Coordinate move = player.makeMove(b);
+        assertEquals(4000, player.getPlayoutsOfLastMove());
+        assertTrue(b.isMoveLegal(move));
+
+        b.makeMove(b.getGeometry().index(move));
+        b.makeMove(b.getEmptyField(0));
+        player.makeMove(b);
+        assertEquals(4000, player.getPlayoutsOfLastMove());
+        assertTrue(player.getReusedPlayouts() > 0);
+    }
+
+    @Test
+    public void testPondering() throws InterruptedException {
+        //a large exploration spreads the playouts evenly over the 8 replies
+        Board b = new Board(3);
+        PlayerMCTS player = new PlayerMCTS(500, 1000, 1);
+        player.setPonderPlayouts(8000);
+        b.makeMove(b.getGeometry().index(player.makeMove(b)));
+
+        //without pondering the reply could have at most 500 playouts, the
+        //pondering stops after its 8000
+        player.startPondering(b);
+        player.awaitPondering();
+        b.makeMove(b.getEmptyField(0));
+        player.makeMove(b);
+        assertTrue(player.getReusedPlayouts() > 500);
+        assertTrue(player.getReusedPlayouts() <= 500 + 8000);
+
+        //a whole game with pondering on both sides
+        PlayerMCTS first = new PlayerMCTS(200);
+        PlayerMCTS second = new PlayerMCTS(200);
+        Game game = new Game(new Board(5), first, second);
+        game.setPondering(true);
+        game.play();
+        assertTrue(game.whoWon() != 0);
+    }
+}
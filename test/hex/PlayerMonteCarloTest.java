@@ -2,6 +2,7 @@ package hex;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.AfterClass;
@@ -32,7 +33,7 @@ public class PlayerMonteCarloTest {
     @Test
     public void testDidIWin() {
         try {
-            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0,1);
+            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0, 1, false);
             Class[] cArg = new Class[2];
             cArg[0] = Board.class;
             cArg[1] = byte.class;
@@ -61,6 +62,331 @@ public class PlayerMonteCarloTest {
 
     }
     
+    /**
+     * Test of didIWin and Board.getWinner against union find of the Game, on
+     * random games of sizes with one and with more words per bitset.
+     */
+    @Test
+    public void testDidIWinMatchesUnionFind() {
+        Random random = new Random(7);
+        for (int size = 1; size <= 13; size++) {
+            for (int game = 0; game < 20; game++) {
+                Board b = new Board(size);
+                Game g = new Game(b, null, null);
+
+                while (b.getNoOfEmptyFields() > 0) {
+                    g.playMove(b.randomEmptyField(random));
+                    assertEquals("size " + size, g.whoWon(), b.getWinner());
+                }
+
+                boolean verticalWon = g.whoWon() == 1;
+                assertEquals(verticalWon, PlayerMonteCarlo.didIWin(b, (byte) 0));
+                assertEquals(!verticalWon, PlayerMonteCarlo.didIWin(b, (byte) 1));
+            }
+        }
+    }
+
+    /**
+     * Seeded players have to give the same estimates for the same position,
+     * no matter how many threads run the playouts.
+     */
+    @Test
+    public void testSeededPlayoutsAreReproducible() {
+        Board b = new Board(5);
+        b.putMark(new Coordinate(2, 2), (byte) 1);
+
+        PlayerMonteCarlo first = new PlayerMonteCarlo(300, 1, false);
+        PlayerMonteCarlo second = new PlayerMonteCarlo(300, 3, false);
+        first.setSeed(11);
+        second.setSeed(11);
+
+        MCSimulationMove[] a = first.makeMoveWithProbability(b);
+        MCSimulationMove[] c = second.makeMoveWithProbability(b);
+        assertEquals(a.length, c.length);
+        for (int iCount = 0; iCount < a.length; iCount++) {
+            assertEquals(a[iCount].getCoordinates().toString(),
+                    c[iCount].getCoordinates().toString());
+            assertEquals(a[iCount].getProbability(), c[iCount].getProbability());
+        }
+
+        //workers keep their playouts from move to move, in all modes
+        Board other = new Board(5);
+        other.makeMove(7);
+        other.makeMove(3);
+        for (PlayoutMode mode : PlayoutMode.values()) {
+            first.setPlayoutMode(mode);
+            second.setPlayoutMode(mode);
+            a = first.makeMoveWithProbability(b);
+            first.makeMoveWithProbability(other);
+            c = first.makeMoveWithProbability(b);
+            MCSimulationMove[] d = second.makeMoveWithProbability(b);
+            for (int iCount = 0; iCount < a.length; iCount++) {
+                assertEquals(a[iCount].getProbability(), c[iCount].getProbability());
+                assertEquals(a[iCount].getProbability(), d[iCount].getProbability());
+            }
+        }
+    }
+
+    /**
+     * Bit-sliced playouts have to give the same estimates as fill playouts,
+     * also when the playouts don't fill whole words.
+     */
+    @Test
+    public void testBitSlicedPlayouts() {
+        //vertical player wins with the last field of the middle column
+        Board b = new Board(3);
+        b.makeMove(1);
+        b.makeMove(0);
+        b.makeMove(4);
+        b.makeMove(2);
+        int[] empty = b.getEmptyFieldIndices();
+        Playout bitSliced = Playout.create(PlayoutMode.BIT_SLICED, b,
+                b.deepCopy(), empty);
+        for (int iCount = 0; iCount < empty.length; iCount++) {
+            if (empty[iCount] == 7) {
+                assertEquals(100, bitSliced.run(iCount, 100));
+            }
+        }
+
+        Board c = new Board(5);
+        c.makeMove(12);
+        c.makeMove(6);
+        c.makeMove(17);
+        empty = c.getEmptyFieldIndices();
+        Playout fill = Playout.create(PlayoutMode.FILL, c, c.deepCopy(), empty);
+        bitSliced = Playout.create(PlayoutMode.BIT_SLICED, c, c.deepCopy(), empty);
+        fill.setSeed(1);
+        bitSliced.setSeed(2);
+        int n = 64 * 400;
+        for (int iCount = 0; iCount < 3; iCount++) {
+            double p = fill.run(iCount, n) / (double) n;
+            double q = bitSliced.run(iCount, n) / (double) n;
+            assertEquals(p, q, 5 * Math.sqrt(2 * p * (1 - p) / n));
+        }
+        assertEquals(3L * n * empty.length, bitSliced.getFieldsPlayed());
+    }
+
+    /**
+     * Early-terminating playouts have to give the same winner as the whole
+     * fill in the same order would, and the same estimates as fill playouts.
+     */
+    @Test
+    public void testEarlyTerminationPlayouts() {
+        Random random = new Random(13);
+        for (int position = 0; position < 6; position++) {
+            //mid-game position that nobody has won yet
+            int size = 5 + position % 3;
+            Board b = new Board(size);
+            while (b.getNoOfEmptyFields() > size * size / 2) {
+                int field = b.randomEmptyField(random);
+                b.makeMove(field);
+                if (b.getWinner() != 0) {
+                    b.undoMove();
+                }
+            }
+            int[] empty = b.getEmptyFieldIndices();
+            byte mark = (byte) (b.whosOnTheMove() + 1);
+            Playout early = Playout.create(PlayoutMode.EARLY_TERMINATION, b,
+                    b.deepCopy(), empty);
+
+            //each playout against the whole fill it stopped early
+            for (int candidate = 0; candidate < empty.length; candidate++) {
+                for (long seed = 0; seed < 20; seed++) {
+                    early.setSeed(seed);
+                    boolean won = early.run(candidate, 1) == 1;
+
+                    PlayoutRandom r = new PlayoutRandom(seed);
+                    Board full = b.deepCopy();
+                    full.putMark(empty[candidate], mark);
+                    int[] order = new int[empty.length - 1];
+                    int remaining = 0;
+                    for (int iCount = 0; iCount < empty.length; iCount++) {
+                        if (iCount != candidate) {
+                            order[remaining++] = empty[iCount];
+                        }
+                    }
+                    byte next = (byte) (3 - mark);
+                    while (remaining > 0) {
+                        int index = r.nextInt(remaining);
+                        full.putMark(order[index], next);
+                        order[index] = order[--remaining];
+                        next = (byte) (3 - next);
+                    }
+                    assertEquals(won, full.getWinner() == mark);
+                }
+            }
+
+            //estimates of both modes agree
+            Playout fill = Playout.create(PlayoutMode.FILL, b, b.deepCopy(),
+                    empty);
+            fill.setSeed(1);
+            early.setSeed(2);
+            int n = 4000;
+            for (int candidate = 0; candidate < 3; candidate++) {
+                double p = fill.run(candidate, n) / (double) n;
+                double q = early.run(candidate, n) / (double) n;
+                assertEquals(p, q, 5 * Math.sqrt(2 * p * (1 - p) / n) + 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Shared fills have to credit each field with the fills in which the
+     * player on the move got it, and all evaluation modes have to find the
+     * only winning move.
+     */
+    @Test
+    public void testSharedFills() {
+        //each field is counted in the fills that gave it the player's mark
+        Board b = new Board(5);
+        b.makeMove(12);
+        b.makeMove(6);
+        b.makeMove(17);
+        int[] empty = b.getEmptyFieldIndices();
+        int n = empty.length;
+        byte mark = (byte) (b.whosOnTheMove() + 1);
+        FillPlayout shared = new FillPlayout(b, b.deepCopy(), empty);
+        shared.setSeed(9);
+        int[] wins = new int[n];
+        int[] counts = new int[n];
+        shared.runShared(500, wins, counts, 0);
+
+        PlayoutRandom r = new PlayoutRandom(9);
+        byte[] fill = new byte[n];
+        for (int iCount = 0; iCount < n; iCount++) {
+            fill[iCount] = iCount < (n + 1) / 2 ? mark : (byte) (3 - mark);
+        }
+        int[] expectedWins = new int[n];
+        int[] expectedCounts = new int[n];
+        for (int repetition = 0; repetition < 500; repetition++) {
+            PlayerMonteCarlo.shuffleArray(fill, r);
+            Board full = b.deepCopy();
+            for (int iCount = 0; iCount < n; iCount++) {
+                full.putMark(empty[iCount], fill[iCount]);
+            }
+            boolean won = full.getWinner() == mark;
+            for (int iCount = 0; iCount < n; iCount++) {
+                if (fill[iCount] == mark) {
+                    expectedCounts[iCount]++;
+                    expectedWins[iCount] += won ? 1 : 0;
+                }
+            }
+        }
+        assertArrayEquals(expectedCounts, counts);
+        assertArrayEquals(expectedWins, wins);
+
+        //vertical player on the move wins only with the middle of the
+        //bottom row, every mode ranks it first
+        Board c = new Board(3);
+        c.makeMove(1);
+        c.makeMove(0);
+        c.makeMove(4);
+        c.makeMove(6);
+        for (EvaluationMode mode : EvaluationMode.values()) {
+            PlayerMonteCarlo player = new PlayerMonteCarlo(400, 2, false);
+            player.setEvaluationMode(mode);
+            player.setSeed(4);
+            MCSimulationMove[] moves = player.makeMoveWithProbability(c);
+            assertEquals(mode.toString(), 5, moves.length);
+            assertEquals(mode.toString(), 2, moves[0].getCoordinates().row);
+            assertEquals(mode.toString(), 1, moves[0].getCoordinates().col);
+        }
+    }
+
+    @Test
+    public void testBudget() {
+        Board b = new Board(7);
+        PlayerMonteCarlo player = new PlayerMonteCarlo(100, 2, false);
+
+        //playout limit is for all candidates together
+        player.setBudget(SearchBudget.ofPlayouts(49 * 128));
+        assertEquals(49, player.makeMoveWithProbability(b).length);
+        assertEquals(49 * 128, player.getPlayoutsOfLastMove());
+
+        //time limit stops the search before a million playouts per field
+        PlayerMonteCarlo timed = new PlayerMonteCarlo(1000000, 2, false);
+        timed.setBudget(SearchBudget.ofTime(50));
+        MCSimulationMove[] moves = timed.makeMoveWithProbability(b);
+        assertTrue(timed.getPlayoutsOfLastMove() > 0);
+        assertTrue(timed.getPlayoutsOfLastMove() < 49L * 1000000);
+        assertTrue(moves[0].getProbability() <= 1000000);
+
+        //a clock is spread over the expected moves, 15 on an empty 7x7
+        //board, without its reserve
+        TimeManager clock = new TimeManager(1510, 10);
+        assertEquals(15, clock.expectedMovesToGo(b));
+        assertEquals(100, clock.budgetFor(b).getMillis());
+        clock.moveDone(40);
+        assertEquals(1470, clock.getRemainingMillis());
+        assertEquals(97, clock.budgetFor(b).getMillis());
+
+        //the last moves get at least a few moves' share, and a used up
+        //clock still gives a millisecond
+        Board almostFull = new Board(2);
+        almostFull.makeMove(0);
+        almostFull.makeMove(1);
+        assertEquals(TimeManager.MIN_MOVES_TO_GO,
+                clock.expectedMovesToGo(almostFull));
+        assertEquals(486, clock.budgetFor(almostFull).getMillis());
+        clock.moveDone(5000);
+        assertEquals(0, clock.getRemainingMillis());
+        assertEquals(1, clock.budgetFor(b).getMillis());
+
+        //a player with a clock takes its moves off it
+        clock = new TimeManager(500, 10);
+        player.setTimeManager(clock);
+        player.makeMove(b);
+        assertTrue(clock.getRemainingMillis() < 500);
+    }
+
+    @Test
+    public void testAdaptiveAllocation() {
+        Board b = new Board(5);
+        for (AllocationStrategy allocation : AllocationStrategy.values()) {
+            PlayerMonteCarlo player = new PlayerMonteCarlo(1000, 2, false);
+            player.setAllocationStrategy(allocation);
+            player.setSeed(3);
+            MCSimulationMove[] moves = player.makeMoveWithProbability(b);
+
+            //never more playouts than uniform, counted in the visits
+            long visits = 0;
+            for (MCSimulationMove move : moves) {
+                visits += move.getVisits();
+            }
+            assertEquals(25, moves.length);
+            assertEquals(player.getPlayoutsOfLastMove(), visits);
+            assertTrue(visits <= 25 * 1000);
+            assertTrue(moves[0].getVisits() >= moves[24].getVisits());
+        }
+    }
+
+    @Test
+    public void testSymmetry() {
+        Board b = new Board(5);
+        PlayerMonteCarlo player = new PlayerMonteCarlo(100, 2, false);
+        player.setSymmetry(true);
+        player.setSeed(5);
+
+        //12 pairs and the centre are played, images get the same estimate
+        MCSimulationMove[] moves = player.makeMoveWithProbability(b);
+        assertEquals(25, moves.length);
+        assertEquals(13 * 100, player.getPlayoutsOfLastMove());
+        double[] estimates = new double[25];
+        for (MCSimulationMove move : moves) {
+            Coordinate c = move.getCoordinates();
+            estimates[c.row * 5 + c.col] = move.getProbability();
+            assertEquals(100, move.getVisits());
+        }
+        for (int i = 0; i < 25; i++) {
+            assertEquals(estimates[i], estimates[24 - i], 0.0);
+        }
+
+        //positions that aren't symmetric are evaluated as usual
+        b.makeMove(0);
+        player.makeMoveWithProbability(b);
+        assertEquals(24 * 100, player.getPlayoutsOfLastMove());
+    }
+
     @Test
     public void testGetNumberOfFirstPlayersMoves() {
         System.out.println("Testing getNumberOfFirstPlayersMoves");
@@ -71,7 +397,7 @@ public class PlayerMonteCarloTest {
                     Integer.TYPE, Integer.TYPE);
             method.setAccessible(true);
             
-            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0,1);
+            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0, 1, false);
             //int movesPlayed, int tableSize
             
             int res1 = (int) method.invoke(pmc, 1, 25);
@@ -117,7 +443,7 @@ public class PlayerMonteCarloTest {
             method.setAccessible(true);
             //int movesPlayed, int tableSize
             
-            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0,1);
+            PlayerMonteCarlo pmc = new PlayerMonteCarlo(0, 1, false);
             
             byte[] res1 = (byte[])method.invoke(pmc, 0, 9);
             byte[] res2 = (byte[])method.invoke(pmc, 1, 16);
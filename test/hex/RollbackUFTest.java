@@ -0,0 +1,68 @@
+package hex;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ljubo Raicevic <rljubo90@gmail.com>
+ */
+public class RollbackUFTest {
+
+    public RollbackUFTest() {
+    }
+
+    @Test
+    public void testRollback() {
+        Random random = new Random(3);
+        int n = 50;
+        RollbackUF uf = new RollbackUF(n);
+        int[][] unions = new int[60][2];
+        int[] checkpoints = new int[unions.length];
+
+        for (int iCount = 0; iCount < unions.length; iCount++) {
+            checkpoints[iCount] = uf.checkpoint();
+            unions[iCount][0] = random.nextInt(n);
+            unions[iCount][1] = random.nextInt(n);
+            uf.union(unions[iCount][0], unions[iCount][1]);
+        }
+
+        //roll back step by step and compare with a union find built from
+        //the unions that are left
+        for (int iCount = unions.length - 1; iCount >= 0; iCount--) {
+            uf.rollback(checkpoints[iCount]);
+            UF expected = new UF(n);
+            for (int jCount = 0; jCount < iCount; jCount++) {
+                expected.union(unions[jCount][0], unions[jCount][1]);
+            }
+
+            assertEquals(expected.count(), uf.count());
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    assertEquals(expected.connected(p, q), uf.connected(p, q));
+                }
+            }
+        }
+        assertEquals(n, uf.count());
+    }
+
+    @Test
+    public void testGameUndo() {
+        Random random = new Random(5);
+        Board b = new Board(7);
+        Game g = new Game(b, null, null);
+        byte[] winners = new byte[b.getSize() * b.getSize()];
+
+        while (b.getNoOfEmptyFields() > 0) {
+            g.playMove(b.randomEmptyField(random));
+            winners[g.movesPlayed - 1] = g.whoWon();
+        }
+
+        while (g.movesPlayed > 1) {
+            g.undoMove();
+            assertEquals(winners[g.movesPlayed - 1], g.whoWon());
+            assertEquals(b.getWinner(), g.whoWon());
+        }
+    }
+}